@@ -552,7 +552,8 @@ public final class Settings {
     public final Setting<Boolean> simplifyUnloadedYCoord = new Setting<>(true);
 
     /**
-     * Whenever a block changes, repack the whole chunk that it's in
+     * Whenever a block changes, update it in the cache. Only the changed blocks are repacked, not the whole chunk,
+     * unless the chunk isn't cached yet.
      */
     public final Setting<Boolean> repackOnAnyBlockChange = new Setting<>(true);
 
@@ -634,6 +635,14 @@ public final class Settings {
      */
     public final Setting<Integer> chunkPackerQueueMaxSize = new Setting<>(2000);
 
+    /**
+     * Load cached regions from disk in the background ahead of time, along the current path and in the direction of
+     * the goal, so that path calculation doesn't see them as unknown (or wait for them to load)
+     * <p>
+     * This also loads all the cached regions around you in parallel when you enter a world, closest first
+     */
+    public final Setting<Boolean> prefetchCachedRegions = new Setting<>(true);
+
     /**
      * Fill in blocks behind you
      */
@@ -1069,6 +1078,23 @@ public final class Settings {
      */
     public final Setting<String> schematicFallbackExtension = new Setting<>("schematic");
 
+    /**
+     * Keep litematica schematics loaded by the build command compressed, and only decode the parts that are looked
+     * at, 16x16x16 at a time. Huge schematics then start building sooner and take much less memory.
+     */
+    public final Setting<Boolean> lazySchematicLoading = new Setting<>(false);
+
+    /**
+     * How many decoded 16x16x16 tiles of a lazily loaded schematic to keep around, see {@link #lazySchematicLoading}
+     */
+    public final Setting<Integer> schematicTileCacheSize = new Setting<>(1024);
+
+    /**
+     * Keep a copy of each schematic file loaded by the build command in a format that loads without parsing, so that
+     * loading the same file again is much quicker. The copies go in baritone/schematic-cache.
+     */
+    public final Setting<Boolean> schematicCache = new Setting<>(true);
+
     /**
      * Distance to scan every tick for updates. Expanding this beyond player reach distance (i.e. setting it to 6 or above)
      * is only necessary in very large schematics where rescanning the whole thing is costly.
@@ -1093,6 +1119,12 @@ public final class Settings {
      */
     public final Setting<Boolean> distanceTrim = new Setting<>(true);
 
+    /**
+     * Finish one 8x8 area of the build before moving on to the next closest one, instead of pathing towards whatever
+     * incorrect block is closest at the time
+     */
+    public final Setting<Boolean> buildInCells = new Setting<>(false);
+
     /**
      * Cancel the current path if the goal has changed, and the path originally ended in the goal but doesn't anymore.
      * <p>
@@ -17,10 +17,13 @@
 
 package baritone.api.cache;
 
-import java.util.ArrayList;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.chunk.LevelChunk;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 /**
  * @author Brady
  * @since 9/24/2018
@@ -45,6 +48,15 @@ public interface ICachedWorld {
      */
     void queueForPacking(LevelChunk chunk);
 
+    /**
+     * Queues the specified blocks to have their cached data updated, without repacking the whole chunk. If the chunk
+     * isn't cached yet by the time it's looked at, it's packed from scratch instead.
+     *
+     * @param chunk     The chunk that the changed blocks are in
+     * @param positions The absolute positions of the changed blocks
+     */
+    void updateBlocks(LevelChunk chunk, Collection<BlockPos> positions);
+
     /**
      * Returns whether or not the block at the specified X and Z coordinates
      * is cached in this world.
@@ -69,9 +81,48 @@ public interface ICachedWorld {
      */
     ArrayList<BlockPos> getLocationsOf(String block, int maximum, int centerX, int centerZ, int maxRegionDistanceSq);
 
+    /**
+     * Returns the known locations of the specified special block that are closest to the specified center, closest
+     * first. Unlike {@link #getLocationsOf}, regions are only looked at for as long as they could still contain a
+     * location closer than the furthest of the {@code maximum} found so far. The same caveats about how up to date
+     * the information is apply.
+     *
+     * @param block             The special block to search for
+     * @param maximum           The maximum number of position results to receive
+     * @param center            The center of the search, distance is measured in 3D
+     * @param maxRegionDistance The maximum distance, in regions along either axis, from the region of the center
+     * @return Up to {@code maximum} locations of the special block, in order of increasing distance to the center
+     */
+    List<BlockPos> getNearestLocationsOf(String block, int maximum, BlockPos center, int maxRegionDistance);
+
+    /**
+     * Same as {@link #getNearestLocationsOf(String, int, BlockPos, int)}, but only for locations within the specified
+     * y range and distance of the center. Cached regions that aren't in memory are only read from disk if what's known
+     * about them doesn't already rule them out.
+     *
+     * @param block       The special block to search for
+     * @param maximum     The maximum number of position results to receive
+     * @param center      The center of the search, distance is measured in 3D
+     * @param minY        The lowest y of a location to return
+     * @param maxY        The highest y of a location to return
+     * @param maxDistance The maximum distance of a location from the center
+     * @return Up to {@code maximum} locations of the special block, in order of increasing distance to the center
+     */
+    List<BlockPos> getNearestLocationsOf(String block, int maximum, BlockPos center, int minY, int maxY, int maxDistance);
+
+    /**
+     * Returns how far along loading the cached regions around the player from disk is, after entering this world.
+     * The regions closest to the player are loaded first, so pathing near the player doesn't need to wait for this
+     * to finish.
+     *
+     * @return The fraction of the regions to load that have been loaded, from 0 to 1. 1 if there was nothing to load.
+     */
+    double getWarmUpProgress();
+
     /**
      * Reloads all of the cached regions in this world from disk. Anything that is not saved
-     * will be lost. This operation does not execute in a new thread by default.
+     * will be lost. This operation does not execute in a new thread by default, but regions
+     * are loaded in parallel.
      */
     void reloadAllFromDisk();
 
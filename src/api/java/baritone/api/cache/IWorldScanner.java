@@ -19,7 +19,10 @@ package baritone.api.cache;
 
 import baritone.api.utils.BlockOptionalMetaLookup;
 import baritone.api.utils.IPlayerContext;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.Predicate;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.block.Block;
@@ -47,6 +50,48 @@ public interface IWorldScanner {
         return scanChunkRadius(ctx, new BlockOptionalMetaLookup(filter.toArray(new Block[0])), max, yLevelThreshold, maxSearchRadius);
     }
 
+    /**
+     * Scans the world, up to the specified max chunk radius, for the specified blocks, passing each match to the
+     * consumer in order of increasing distance from the player. Only as much of the world is scanned as is needed to
+     * be sure of that order, so once the consumer has had enough, the rest of the world isn't looked at.
+     * <p>
+     * The default implementation scans everything up front, implementations should override it to scan incrementally.
+     *
+     * @param ctx             The {@link IPlayerContext} containing player and world info that the scan is based upon
+     * @param filter          The blocks to scan for
+     * @param max             The maximum number of blocks to pass to the consumer, or a negative value for no limit
+     * @param maxSearchRadius The maximum chunk search radius
+     * @param consumer        Accepts each matching block position, returns {@code false} to stop the scan
+     */
+    default void scanNearest(IPlayerContext ctx, BlockOptionalMetaLookup filter, int max, int maxSearchRadius, Predicate<BlockPos> consumer) {
+        BlockPos feet = ctx.playerFeet();
+        List<BlockPos> all = scanChunkRadius(ctx, filter, Integer.MAX_VALUE, -1, maxSearchRadius);
+        all.sort(Comparator.comparingDouble(feet::distSqr));
+        for (int i = 0; i < all.size() && (max < 0 || i < max); i++) {
+            if (!consumer.test(all.get(i))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Scans the world, up to the specified max chunk radius, for the closest of the specified blocks.
+     *
+     * @param ctx             The {@link IPlayerContext} containing player and world info that the scan is based upon
+     * @param filter          The blocks to scan for
+     * @param max             The maximum number of blocks to return
+     * @param maxSearchRadius The maximum chunk search radius
+     * @return The closest matching block positions, closest first
+     * @see #scanNearest(IPlayerContext, BlockOptionalMetaLookup, int, int, Predicate)
+     */
+    default List<BlockPos> scanNearest(IPlayerContext ctx, BlockOptionalMetaLookup filter, int max, int maxSearchRadius) {
+        List<BlockPos> result = new ArrayList<>();
+        if (max > 0) {
+            scanNearest(ctx, filter, max, maxSearchRadius, result::add);
+        }
+        return result;
+    }
+
     /**
      * Scans a single chunk for the specified blocks.
      *
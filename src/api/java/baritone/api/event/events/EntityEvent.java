@@ -0,0 +1,71 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package baritone.api.event.events;
+
+import net.minecraft.world.entity.Entity;
+
+/**
+ * Called when an entity is added to or removed from the client world.
+ */
+public final class EntityEvent {
+
+    /**
+     * The type of entity event that occurred
+     *
+     * @see Type
+     */
+    private final Type type;
+
+    /**
+     * The entity
+     */
+    private final Entity entity;
+
+    public EntityEvent(Type type, Entity entity) {
+        this.type = type;
+        this.entity = entity;
+    }
+
+    /**
+     * @return The type of entity event that occurred
+     */
+    public Type getType() {
+        return this.type;
+    }
+
+    /**
+     * @return The entity
+     */
+    public Entity getEntity() {
+        return this.entity;
+    }
+
+    public enum Type {
+
+        /**
+         * When the entity is spawned in the world. Note that for many entities, the data that describes them, such as
+         * the stack of an item entity, arrives afterwards.
+         */
+        ADD,
+
+        /**
+         * When the entity is removed from the world.
+         */
+        REMOVE
+    }
+}
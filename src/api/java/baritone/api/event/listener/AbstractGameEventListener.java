@@ -51,6 +51,9 @@ public interface AbstractGameEventListener extends IGameEventListener {
     @Override
     default void onBlockChange(BlockChangeEvent event) {}
 
+    @Override
+    default void onEntityEvent(EntityEvent event) {}
+
     @Override
     default void onRenderPass(RenderEvent event) {}
 
@@ -78,6 +78,15 @@ public interface IGameEventListener {
      */
     void onChunkEvent(ChunkEvent event);
 
+    /**
+     * Runs after an entity is added to or removed from the world.
+     *
+     * @param event The event
+     * @see ClientLevel#putNonPlayerEntity(int, Entity)
+     * @see ClientLevel#removeEntity(int, Entity.RemovalReason)
+     */
+    void onEntityEvent(EntityEvent event);
+
     /**
      * Runs after a single or multi block change packet is received and processed.
      *
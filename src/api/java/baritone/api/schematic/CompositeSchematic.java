@@ -17,22 +17,48 @@
 
 package baritone.api.schematic;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.world.level.block.state.BlockState;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import net.minecraft.world.level.block.state.BlockState;
 
 public class CompositeSchematic extends AbstractSchematic {
 
     private final List<CompositeSchematicEntry> schematics;
     private CompositeSchematicEntry[] schematicArr;
 
+    /**
+     * The entries whose bounds overlap each 16x16 column, in the order they were put in, so that looking up a position
+     * doesn't have to go through all of them
+     */
+    private Long2ObjectOpenHashMap<CompositeSchematicEntry[]> index;
+
+    private static final CompositeSchematicEntry[] NONE = new CompositeSchematicEntry[0];
+
     private void recalcArr() {
         schematicArr = schematics.toArray(new CompositeSchematicEntry[0]);
+        Long2ObjectOpenHashMap<CompositeSchematicEntry[]> index = new Long2ObjectOpenHashMap<>();
         for (CompositeSchematicEntry entry : schematicArr) {
             this.x = Math.max(x, entry.x + entry.schematic.widthX());
             this.y = Math.max(y, entry.y + entry.schematic.heightY());
             this.z = Math.max(z, entry.z + entry.schematic.lengthZ());
+            for (int cellX = entry.x >> 4; cellX <= (entry.x + entry.schematic.widthX() - 1) >> 4; cellX++) {
+                for (int cellZ = entry.z >> 4; cellZ <= (entry.z + entry.schematic.lengthZ() - 1) >> 4; cellZ++) {
+                    long key = cell(cellX, cellZ);
+                    CompositeSchematicEntry[] entries = index.getOrDefault(key, NONE);
+                    entries = Arrays.copyOf(entries, entries.length + 1);
+                    entries[entries.length - 1] = entry;
+                    index.put(key, entries);
+                }
+            }
         }
+        this.index = index;
+    }
+
+    private static long cell(int cellX, int cellZ) {
+        return (long) cellX << 32 | (cellZ & 0xFFFFFFFFL);
     }
 
     public CompositeSchematic(int x, int y, int z) {
@@ -47,7 +73,11 @@ public class CompositeSchematic extends AbstractSchematic {
     }
 
     private CompositeSchematicEntry getSchematic(int x, int y, int z, BlockState currentState) {
-        for (CompositeSchematicEntry entry : schematicArr) {
+        CompositeSchematicEntry[] entries = index.get(cell(x >> 4, z >> 4));
+        if (entries == null) {
+            return null;
+        }
+        for (CompositeSchematicEntry entry : entries) {
             if (x >= entry.x && y >= entry.y && z >= entry.z &&
                     entry.schematic.inSchematic(x - entry.x, y - entry.y, z - entry.z, currentState)) {
                 return entry;
@@ -24,6 +24,9 @@ import net.minecraft.world.level.block.state.BlockState;
 /**
  * Basic representation of a schematic. Provides the dimensions and the desired state for a given position relative to
  * the origin.
+ * <p>
+ * The builder calls {@link #inSchematic} and {@link #desiredState} from several threads at once, so any caches an
+ * implementation keeps behind them must be safe for that.
  *
  * @author leijurv
  */
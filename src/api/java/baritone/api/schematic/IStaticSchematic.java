@@ -51,9 +51,21 @@ public interface IStaticSchematic extends ISchematic {
      */
     default BlockState[] getColumn(int x, int z) {
         BlockState[] column = new BlockState[this.heightY()];
+        getColumn(x, z, column);
+        return column;
+    }
+
+    /**
+     * Like {@link #getColumn(int, int)}, but fills in an array provided by the caller, so that going over every
+     * column doesn't allocate an array for each of them.
+     *
+     * @param x    The X column position
+     * @param z    The Z column position
+     * @param into An array of size {@link #heightY()} to fill in
+     */
+    default void getColumn(int x, int z, BlockState[] into) {
         for (int i = 0; i < this.heightY(); i++) {
-            column[i] = getDirect(x, i, z);
+            into[i] = getDirect(x, i, z);
         }
-        return column;
     }
 }
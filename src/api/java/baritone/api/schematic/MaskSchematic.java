@@ -18,6 +18,7 @@
 package baritone.api.schematic;
 
 import baritone.api.schematic.mask.Mask;
+import baritone.api.schematic.mask.StaticMask;
 import net.minecraft.world.level.block.state.BlockState;
 
 import java.util.List;
@@ -33,6 +34,21 @@ public abstract class MaskSchematic extends AbstractSchematic {
 
     protected abstract boolean partOfMask(int x, int y, int z, BlockState currentState);
 
+    /**
+     * @return Whether {@link #partOfMask} only depends on the position and not on the current state, like a
+     * {@link StaticMask}, so that it can be worked out ahead of time
+     */
+    public boolean hasStaticMask() {
+        return false;
+    }
+
+    /**
+     * @return The schematic that this masks
+     */
+    public ISchematic getSchematic() {
+        return schematic;
+    }
+
     @Override
     public boolean inSchematic(int x, int y, int z, BlockState currentState) {
         return schematic.inSchematic(x, y, z, currentState) && partOfMask(x, y, z, currentState);
@@ -50,6 +66,11 @@ public abstract class MaskSchematic extends AbstractSchematic {
             protected boolean partOfMask(int x, int y, int z, BlockState currentState) {
                 return function.partOfMask(x, y, z, currentState);
             }
+
+            @Override
+            public boolean hasStaticMask() {
+                return function instanceof StaticMask;
+            }
         };
     }
 }
@@ -45,6 +45,7 @@ public class ReplaceSchematic extends MaskSchematic {
 
     @Override
     protected boolean partOfMask(int x, int y, int z, BlockState currentState) {
+        // racing threads can only both compute and store the same value, and Boolean.TRUE/FALSE are always safe to read
         if (cache[x][y][z] == null) {
             cache[x][y][z] = filter.has(currentState);
         }
@@ -29,4 +29,9 @@ public class ShellSchematic extends MaskSchematic {
     protected boolean partOfMask(int x, int y, int z, BlockState currentState) {
         return x == 0 || y == 0 || z == 0 || x == widthX() - 1 || y == heightY() - 1 || z == lengthZ() - 1;
     }
+
+    @Override
+    public boolean hasStaticMask() {
+        return true;
+    }
 }
@@ -24,15 +24,16 @@ import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.properties.Property;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SubstituteSchematic extends AbstractSchematic {
 
     private final ISchematic schematic;
     private final Map<Block, List<Block>> substitutions;
-    private final Map<BlockState, Map<Block, BlockState>> blockStateCache = new HashMap<>();
+    // the builder asks for desired states from several threads at once
+    private final Map<BlockState, Map<Block, BlockState>> blockStateCache = new ConcurrentHashMap<>();
 
     public SubstituteSchematic(ISchematic schematic, Map<Block, List<Block>> substitutions) {
         super(schematic.widthX(), schematic.heightY(), schematic.lengthZ());
@@ -70,9 +71,10 @@ public class SubstituteSchematic extends AbstractSchematic {
     }
 
     private BlockState withBlock(BlockState state, Block block) {
-        if (blockStateCache.containsKey(state) && blockStateCache.get(state).containsKey(block)) {
-            return blockStateCache.get(state).get(block);
-        }
+        return blockStateCache.computeIfAbsent(state, s -> new ConcurrentHashMap<>()).computeIfAbsent(block, b -> copyProperties(state, b));
+    }
+
+    private BlockState copyProperties(BlockState state, Block block) {
         Collection<Property<?>> properties = state.getProperties();
         BlockState newState = block.defaultBlockState();
         for (Property<?> property : properties) {
@@ -81,7 +83,6 @@ public class SubstituteSchematic extends AbstractSchematic {
             } catch (IllegalArgumentException e) { //property does not exist for target block
             }
         }
-        blockStateCache.computeIfAbsent(state, s -> new HashMap<Block, BlockState>()).put(block, newState);
         return newState;
     }
 
@@ -22,16 +22,23 @@ package baritone.api.schematic.mask;
  */
 final class PreComputedMask extends AbstractMask implements StaticMask {
 
-    private final boolean[][][] mask;
+    /**
+     * One bit per position, indexed by y, z and then x
+     */
+    private final long[] mask;
 
     public PreComputedMask(StaticMask mask) {
         super(mask.widthX(), mask.heightY(), mask.lengthZ());
 
-        this.mask = new boolean[this.heightY()][this.lengthZ()][this.widthX()];
+        int size = Math.toIntExact((long) this.heightY() * this.lengthZ() * this.widthX());
+        this.mask = new long[(int) (((long) size + 63) >>> 6)];
+        int index = 0;
         for (int y = 0; y < this.heightY(); y++) {
             for (int z = 0; z < this.lengthZ(); z++) {
-                for (int x = 0; x < this.widthX(); x++) {
-                    this.mask[y][z][x] = mask.partOfMask(x, y, z);
+                for (int x = 0; x < this.widthX(); x++, index++) {
+                    if (mask.partOfMask(x, y, z)) {
+                        this.mask[index >>> 6] |= 1L << index;
+                    }
                 }
             }
         }
@@ -39,6 +46,7 @@ final class PreComputedMask extends AbstractMask implements StaticMask {
 
     @Override
     public boolean partOfMask(int x, int y, int z) {
-        return this.mask[y][z][x];
+        int index = (y * this.lengthZ() + z) * this.widthX() + x;
+        return (this.mask[index >>> 6] & 1L << index) != 0;
     }
 }
@@ -31,22 +31,28 @@ import java.util.stream.Stream;
 
 public class BlockOptionalMetaLookup {
     private final ImmutableSet<Block> blockSet;
-    private final ImmutableSet<BlockState> blockStateSet;
+    /**
+     * Bitset of the matching block states, indexed by {@link Block#BLOCK_STATE_REGISTRY} id
+     */
+    private final long[] stateIds;
     private final ImmutableSet<Integer> stackHashes;
     private final BlockOptionalMeta[] boms;
 
     public BlockOptionalMetaLookup(BlockOptionalMeta... boms) {
         this.boms = boms;
         Set<Block> blocks = new HashSet<>();
-        Set<BlockState> blockStates = new HashSet<>();
+        long[] stateIds = new long[(Block.BLOCK_STATE_REGISTRY.size() + 63) >> 6];
         Set<Integer> stacks = new HashSet<>();
         for (BlockOptionalMeta bom : boms) {
             blocks.add(bom.getBlock());
-            blockStates.addAll(bom.getAllBlockStates());
+            for (BlockState state : bom.getAllBlockStates()) {
+                int id = Block.BLOCK_STATE_REGISTRY.getId(state);
+                stateIds[id >> 6] |= 1L << id;
+            }
             stacks.addAll(bom.stackHashes());
         }
         this.blockSet = ImmutableSet.copyOf(blocks);
-        this.blockStateSet = ImmutableSet.copyOf(blockStates);
+        this.stateIds = stateIds;
         this.stackHashes = ImmutableSet.copyOf(stacks);
     }
 
@@ -74,7 +80,15 @@ public class BlockOptionalMetaLookup {
     }
 
     public boolean has(BlockState state) {
-        return blockStateSet.contains(state);
+        return hasStateId(Block.BLOCK_STATE_REGISTRY.getId(state));
+    }
+
+    /**
+     * @param id A block state id, as in {@link Block#BLOCK_STATE_REGISTRY}
+     * @return Whether the block state with that id matches
+     */
+    public boolean hasStateId(int id) {
+        return id >= 0 && (id >> 6) < stateIds.length && (stateIds[id >> 6] & (1L << id)) != 0;
     }
 
     public boolean has(ItemStack stack) {
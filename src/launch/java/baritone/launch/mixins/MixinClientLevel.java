@@ -0,0 +1,61 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package baritone.launch.mixins;
+
+import baritone.api.BaritoneAPI;
+import baritone.api.IBaritone;
+import baritone.api.event.events.EntityEvent;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.world.entity.Entity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ClientLevel.class)
+public class MixinClientLevel {
+
+    @Inject(
+            method = "addEntity",
+            at = @At("RETURN")
+    )
+    private void postAddEntity(int id, Entity entity, CallbackInfo ci) {
+        fireEntityEvent(new EntityEvent(EntityEvent.Type.ADD, entity));
+    }
+
+    @Inject(
+            method = "removeEntity",
+            at = @At("HEAD")
+    )
+    private void preRemoveEntity(int id, Entity.RemovalReason reason, CallbackInfo ci) {
+        Entity entity = ((ClientLevel) (Object) this).getEntity(id);
+        if (entity != null) {
+            fireEntityEvent(new EntityEvent(EntityEvent.Type.REMOVE, entity));
+        }
+    }
+
+    @Unique
+    private void fireEntityEvent(EntityEvent event) {
+        for (IBaritone ibaritone : BaritoneAPI.getProvider().getAllBaritones()) {
+            if (ibaritone.getPlayerContext().world() == (Object) this) {
+                ibaritone.getGameEventHandler().onEntityEvent(event);
+            }
+        }
+    }
+}
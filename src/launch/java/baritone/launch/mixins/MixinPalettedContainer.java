@@ -17,6 +17,7 @@
 
 package baritone.launch.mixins;
 
+import baritone.cache.SectionSummary;
 import baritone.utils.accessor.IPalettedContainer;
 import baritone.utils.accessor.IPalettedContainer.IData;
 import net.minecraft.util.BitStorage;
@@ -24,6 +25,10 @@ import net.minecraft.world.level.chunk.Palette;
 import net.minecraft.world.level.chunk.PalettedContainer;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
@@ -73,6 +78,45 @@ public abstract class MixinPalettedContainer<T> implements IPalettedContainer<T>
         DATA_GETTER = MethodHandles.explicitCastArguments(rawGetter, getterType);
     }
 
+    // only ever written from the thread that modifies the container, volatile so scanning threads see it
+    @Unique
+    private volatile int modificationCount;
+
+    @Unique
+    private volatile SectionSummary summary;
+
+    // incremented after the change so that anything read before this is seen as out of date
+    @Inject(
+            method = {"set", "read"},
+            at = @At("RETURN")
+    )
+    private void onModified(CallbackInfo ci) {
+        modificationCount++;
+    }
+
+    @Inject(
+            method = {"getAndSet", "getAndSetUnchecked"},
+            at = @At("RETURN")
+    )
+    private void onSwapped(CallbackInfoReturnable<T> cir) {
+        modificationCount++;
+    }
+
+    @Override
+    public int getModificationCount() {
+        return modificationCount;
+    }
+
+    @Override
+    public SectionSummary getSummary() {
+        return summary;
+    }
+
+    @Override
+    public void setSummary(SectionSummary summary) {
+        this.summary = summary;
+    }
+
     @Override
     public Palette<T> getPalette() {
         return data().getPalette();
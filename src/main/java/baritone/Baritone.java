@@ -26,6 +26,8 @@ import baritone.api.process.IBaritoneProcess;
 import baritone.api.process.IElytraProcess;
 import baritone.api.utils.IPlayerContext;
 import baritone.behavior.*;
+import baritone.cache.DroppedItemIndex;
+import baritone.cache.TargetIndex;
 import baritone.cache.WorldProvider;
 import baritone.command.manager.CommandManager;
 import baritone.event.GameEventHandler;
@@ -70,6 +72,8 @@ public class Baritone implements IBaritone {
     private final LookBehavior lookBehavior;
     private final InventoryBehavior inventoryBehavior;
     private final InputOverrideHandler inputOverrideHandler;
+    private final TargetIndex targetIndex;
+    private final DroppedItemIndex droppedItemIndex;
 
     private final FollowProcess followProcess;
     private final MineProcess mineProcess;
@@ -110,6 +114,9 @@ public class Baritone implements IBaritone {
             this.inventoryBehavior    = this.registerBehavior(InventoryBehavior::new);
             this.inputOverrideHandler = this.registerBehavior(InputOverrideHandler::new);
             this.registerBehavior(WaypointBehavior::new);
+            this.registerBehavior(RegionPrefetchBehavior::new);
+            this.targetIndex          = this.registerBehavior(TargetIndex::new);
+            this.droppedItemIndex     = this.registerBehavior(DroppedItemIndex::new);
         }
 
         this.pathingControlManager = new PathingControlManager(this);
@@ -191,6 +198,14 @@ public class Baritone implements IBaritone {
         return this.lookBehavior;
     }
 
+    public TargetIndex getTargetIndex() {
+        return this.targetIndex;
+    }
+
+    public DroppedItemIndex getDroppedItemIndex() {
+        return this.droppedItemIndex;
+    }
+
     @Override
     public ExploreProcess getExploreProcess() {
         return this.exploreProcess;
@@ -0,0 +1,124 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package baritone.behavior;
+
+import baritone.Baritone;
+import baritone.api.event.events.TickEvent;
+import baritone.api.pathing.calc.IPath;
+import baritone.api.pathing.goals.Goal;
+import baritone.api.utils.BetterBlockPos;
+import baritone.cache.CachedWorld;
+import baritone.cache.WorldData;
+import baritone.pathing.path.PathExecutor;
+
+/**
+ * Loads cached regions from disk in the background before path calculation gets to them. Without this, regions are
+ * only loaded on demand, so a search either sees them as unknown or has to wait on the disk read.
+ * <p>
+ * On the first tick in a world, every region around the player is loaded, see {@link CachedWorld#warmUp}.
+ */
+public final class RegionPrefetchBehavior extends Behavior {
+
+    /**
+     * How many ticks between each prefetch pass, there's no point in doing this every tick
+     */
+    private static final int INTERVAL = 20;
+
+    private int ticks;
+
+    /**
+     * The world that was last warmed up, so that it's only done once each time we enter a world
+     */
+    private CachedWorld warmedUp;
+
+    public RegionPrefetchBehavior(Baritone baritone) {
+        super(baritone);
+    }
+
+    @Override
+    public void onTick(TickEvent event) {
+        if (event.getType() == TickEvent.Type.OUT || !Baritone.settings().prefetchCachedRegions.value) {
+            return;
+        }
+        WorldData worldData = baritone.getWorldProvider().getCurrentWorld();
+        if (worldData == null) {
+            warmedUp = null;
+            return;
+        }
+        CachedWorld cache = worldData.cache;
+        BetterBlockPos feet = ctx.playerFeet();
+        if (warmedUp != cache) {
+            // this isn't done when the world is initialized, because the player isn't necessarily in it yet
+            warmedUp = cache;
+            cache.warmUp(feet);
+        }
+        if (ticks++ % INTERVAL != 0) {
+            return;
+        }
+        cache.prefetchRegion(feet.x >> 9, feet.z >> 9);
+
+        // regions around us that are closer to the goal than we are, that's where the search is going to go
+        Goal goal = baritone.getPathingBehavior().getGoal();
+        if (goal != null) {
+            double here = goal.heuristic(feet.x, feet.y, feet.z);
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    int regionX = (feet.x >> 9) + dx;
+                    int regionZ = (feet.z >> 9) + dz;
+                    if (goal.heuristic((regionX << 9) + 256, feet.y, (regionZ << 9) + 256) < here) {
+                        cache.prefetchRegion(regionX, regionZ);
+                    }
+                }
+            }
+        }
+
+        // the path we're on and the one after it
+        prefetchAlong(cache, baritone.getPathingBehavior().getCurrent());
+        prefetchAlong(cache, baritone.getPathingBehavior().getNext());
+
+        // and wherever the search in progress is currently looking
+        baritone.getPathingBehavior().getInProgress()
+                .flatMap(search -> search.pathToMostRecentNodeConsidered())
+                .ifPresent(path -> {
+                    BetterBlockPos dest = path.getDest();
+                    for (int dx = -1; dx <= 1; dx++) {
+                        for (int dz = -1; dz <= 1; dz++) {
+                            cache.prefetchRegion((dest.x >> 9) + dx, (dest.z >> 9) + dz);
+                        }
+                    }
+                });
+    }
+
+    private static void prefetchAlong(CachedWorld cache, PathExecutor executor) {
+        if (executor == null) {
+            return;
+        }
+        IPath path = executor.getPath();
+        int prevX = Integer.MIN_VALUE;
+        int prevZ = Integer.MIN_VALUE;
+        for (BetterBlockPos pos : path.positions()) {
+            int regionX = pos.x >> 9;
+            int regionZ = pos.z >> 9;
+            if (regionX != prevX || regionZ != prevZ) {
+                cache.prefetchRegion(regionX, regionZ);
+                prevX = regionX;
+                prevZ = regionZ;
+            }
+        }
+    }
+}
@@ -17,10 +17,12 @@
 
 package baritone.cache;
 
-import baritone.api.utils.BlockUtils;
 import baritone.utils.pathing.PathingBlockType;
 import com.google.common.collect.ImmutableSet;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
@@ -30,7 +32,6 @@ import net.minecraft.world.level.dimension.DimensionType;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @author Brady
@@ -110,6 +111,21 @@ public final class CachedChunk {
             Blocks.VINE
     );
 
+    /**
+     * The blocks in {@link #BLOCKS_TO_KEEP_TRACK_OF}, indexed by their tracked id. These ids are only meaningful
+     * in memory, cache files store block names and map them back when loading.
+     */
+    private static final Block[] TRACKED_BLOCKS = BLOCKS_TO_KEEP_TRACK_OF.toArray(new Block[0]);
+
+    private static final Reference2IntOpenHashMap<Block> TRACKED_IDS = new Reference2IntOpenHashMap<>();
+
+    static {
+        TRACKED_IDS.defaultReturnValue(-1);
+        for (int i = 0; i < TRACKED_BLOCKS.length; i++) {
+            TRACKED_IDS.put(TRACKED_BLOCKS[i], i);
+        }
+    }
+
     public final int height;
 
     /**
@@ -141,7 +157,10 @@ public final class CachedChunk {
      */
     private final BitSet data;
 
-    private final Int2ObjectOpenHashMap<String> special;
+    /**
+     * The tracked id of each special block, by its raw bit index
+     */
+    private Int2IntOpenHashMap special;
 
     /**
      * The block names of each surface level block for generating an overview
@@ -150,17 +169,28 @@ public final class CachedChunk {
 
     private final int[] heightMap;
 
-    private final Map<String, List<BlockPos>> specialBlockLocations;
+    /**
+     * The positions of each special block, by tracked id. These are relative to the chunk horizontally, but use
+     * absolute y coordinates.
+     */
+    private final Int2ObjectOpenHashMap<List<BlockPos>> specialBlockLocations;
+
+    /**
+     * The minimum y of the dimension, to convert between the absolute y in {@link #specialBlockLocations} and the
+     * y relative to the bottom of the world that the raw data is indexed by
+     */
+    private final int minY;
 
     public final long cacheTimestamp;
 
-    CachedChunk(int x, int z, int height, BitSet data, BlockState[] overview, Map<String, List<BlockPos>> specialBlockLocations, long cacheTimestamp) {
+    CachedChunk(int x, int z, int minY, int height, BitSet data, BlockState[] overview, Int2ObjectOpenHashMap<List<BlockPos>> specialBlockLocations, long cacheTimestamp) {
         this.size = size(height);
         this.sizeInBytes = sizeInBytes(size);
         validateSize(data);
 
         this.x = x;
         this.z = z;
+        this.minY = minY;
         this.height = height;
         this.data = data;
         this.overview = overview;
@@ -170,12 +200,45 @@ public final class CachedChunk {
         if (specialBlockLocations.isEmpty()) {
             this.special = null;
         } else {
-            this.special = new Int2ObjectOpenHashMap<>();
+            this.special = newSpecialMap();
             setSpecial();
         }
         calculateHeightMap();
     }
 
+    private CachedChunk(CachedChunk other) {
+        this.size = other.size;
+        this.sizeInBytes = other.sizeInBytes;
+        this.x = other.x;
+        this.z = other.z;
+        this.minY = other.minY;
+        this.height = other.height;
+        this.data = (BitSet) other.data.clone();
+        this.overview = other.overview.clone();
+        this.heightMap = other.heightMap.clone();
+        this.specialBlockLocations = new Int2ObjectOpenHashMap<>(other.specialBlockLocations.size());
+        for (Int2ObjectMap.Entry<List<BlockPos>> entry : other.specialBlockLocations.int2ObjectEntrySet()) {
+            this.specialBlockLocations.put(entry.getIntKey(), new ArrayList<>(entry.getValue()));
+        }
+        if (other.special == null) {
+            this.special = null;
+        } else {
+            this.special = newSpecialMap();
+            this.special.putAll(other.special);
+        }
+        this.cacheTimestamp = other.cacheTimestamp;
+    }
+
+    /**
+     * Chunks are read from other threads without any locking, so they're never changed once they've been handed out.
+     * Updates are made to a copy instead, which then replaces the original.
+     *
+     * @return A copy of this chunk that can be changed
+     */
+    final CachedChunk copy() {
+        return new CachedChunk(this);
+    }
+
     public static int size(int dimension_height) {
         return 2 * 16 * 16 * dimension_height;
     }
@@ -184,10 +247,34 @@ public final class CachedChunk {
         return size / 8;
     }
 
+    /**
+     * @return The tracked id of the specified block, or -1 if it isn't in {@link #BLOCKS_TO_KEEP_TRACK_OF}
+     */
+    public static int trackedId(Block block) {
+        return TRACKED_IDS.getInt(block);
+    }
+
+    public static int trackedBlockCount() {
+        return TRACKED_BLOCKS.length;
+    }
+
+    /**
+     * @return The block with the specified tracked id
+     */
+    public static Block trackedBlock(int id) {
+        return TRACKED_BLOCKS[id];
+    }
+
+    private static Int2IntOpenHashMap newSpecialMap() {
+        Int2IntOpenHashMap map = new Int2IntOpenHashMap();
+        map.defaultReturnValue(-1);
+        return map;
+    }
+
     private final void setSpecial() {
-        for (Map.Entry<String, List<BlockPos>> entry : specialBlockLocations.entrySet()) {
+        for (Int2ObjectMap.Entry<List<BlockPos>> entry : specialBlockLocations.int2ObjectEntrySet()) {
             for (BlockPos pos : entry.getValue()) {
-                special.put(getPositionIndex(pos.getX(), pos.getY(), pos.getZ()), entry.getKey());
+                special.put(getPositionIndex(pos.getX(), pos.getY() - minY, pos.getZ()), entry.getIntKey());
             }
         }
     }
@@ -207,9 +294,9 @@ public final class CachedChunk {
             return overview[internalPos];
         }
         if (special != null) {
-            String str = special.get(index);
-            if (str != null) {
-                return BlockUtils.stringToBlockRequired(str).defaultBlockState();
+            int id = special.get(index);
+            if (id != -1) {
+                return TRACKED_BLOCKS[id].defaultBlockState();
             }
         }
 
@@ -248,20 +335,126 @@ public final class CachedChunk {
         }
     }
 
+    /**
+     * Updates the packed type and special block tracking of a single block in place. This does not touch the height
+     * map or the overview, see {@link #recalculateHeight(int, int)} and {@link #setOverview(int, int, BlockState)}.
+     * Only to be used on a {@link #copy()} that nothing else can see yet.
+     *
+     * @param x     The x position relative to this chunk
+     * @param y     The y position relative to the bottom of the world
+     * @param z     The z position relative to this chunk
+     * @param type  The new pathing type of the block
+     * @param block The new block
+     * @return Whether anything in this chunk was changed
+     */
+    final boolean updateBlock(int x, int y, int z, PathingBlockType type, Block block) {
+        int index = getPositionIndex(x, y, z);
+        boolean changed = getType(index) != type;
+        boolean[] bits = type.getBits();
+        data.set(index, bits[0]);
+        data.set(index + 1, bits[1]);
+
+        int prev = special == null ? -1 : special.get(index);
+        int id = trackedId(block);
+        if (prev == id) {
+            return changed;
+        }
+        BlockPos pos = new BlockPos(x, y + minY, z);
+        if (prev != -1) {
+            special.remove(index);
+            List<BlockPos> locs = specialBlockLocations.get(prev);
+            if (locs != null) {
+                locs.remove(pos);
+                if (locs.isEmpty()) {
+                    specialBlockLocations.remove(prev);
+                }
+            }
+        }
+        if (id != -1) {
+            if (special == null) {
+                special = newSpecialMap();
+            }
+            special.put(index, id);
+            List<BlockPos> locs = specialBlockLocations.get(id);
+            if (locs == null) {
+                locs = new ArrayList<>();
+                specialBlockLocations.put(id, locs);
+            }
+            locs.add(pos);
+        }
+        return true;
+    }
+
+    /**
+     * @return Whether {@link #updateBlock(int, int, int, PathingBlockType, Block)} with the same arguments would change
+     * anything, without changing it
+     */
+    final boolean differs(int x, int y, int z, PathingBlockType type, Block block) {
+        int index = getPositionIndex(x, y, z);
+        return getType(index) != type || (special == null ? -1 : special.get(index)) != trackedId(block);
+    }
+
+    /**
+     * Recalculates the height map entry of a single column, after one of its blocks has been updated.
+     *
+     * @param x The x position relative to this chunk
+     * @param z The z position relative to this chunk
+     * @return The y of the new top non-air block in the column, or -1 if the column is entirely air
+     */
+    final int recalculateHeight(int x, int z) {
+        int top = findHeight(x, z);
+        heightMap[z << 4 | x] = Math.max(top, 0);
+        return top;
+    }
+
+    /**
+     * @return The y of the top non-air block in the column, or -1 if the column is entirely air
+     */
+    final int findHeight(int x, int z) {
+        for (int y = height - 1; y >= 0; y--) {
+            int i = getPositionIndex(x, y, z);
+            if (data.get(i) || data.get(i + 1)) {
+                return y;
+            }
+        }
+        return -1;
+    }
+
+    final int getHeight(int x, int z) {
+        return heightMap[z << 4 | x];
+    }
+
+    /**
+     * @return Whether the overview block of this column was changed
+     */
+    final boolean setOverview(int x, int z, BlockState state) {
+        int index = z << 4 | x;
+        if (overview[index] == state) {
+            return false;
+        }
+        overview[index] = state;
+        return true;
+    }
+
     public final BlockState[] getOverview() {
         return overview;
     }
 
-    public final Map<String, List<BlockPos>> getRelativeBlocks() {
+    /**
+     * @return The positions of each special block by tracked id, relative to the chunk horizontally but with an
+     * absolute y
+     */
+    public final Int2ObjectMap<List<BlockPos>> getRelativeBlocks() {
         return specialBlockLocations;
     }
 
-    public final ArrayList<BlockPos> getAbsoluteBlocks(String blockType) {
-        if (specialBlockLocations.get(blockType) == null) {
+    public final ArrayList<BlockPos> getAbsoluteBlocks(Block block) {
+        List<BlockPos> locs = specialBlockLocations.get(trackedId(block));
+        if (locs == null) {
             return null;
         }
         ArrayList<BlockPos> res = new ArrayList<>();
-        for (BlockPos pos : specialBlockLocations.get(blockType)) {
+        for (BlockPos pos : locs) {
             res.add(new BlockPos(pos.getX() + x * 16, pos.getY(), pos.getZ() + z * 16));
         }
         return res;
@@ -20,8 +20,13 @@ package baritone.cache;
 import baritone.Baritone;
 import baritone.api.cache.ICachedRegion;
 import baritone.api.utils.BlockUtils;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.level.dimension.DimensionType;
 
 import java.io.*;
@@ -44,7 +49,14 @@ public final class CachedRegion implements ICachedRegion {
     /**
      * Magic value to detect invalid cache files, or incompatible cache files saved in an old version of Baritone
      */
-    private static final int CACHED_REGION_MAGIC = 456022911;
+    private static final int CACHED_REGION_MAGIC = 456022912;
+
+    /**
+     * Magic value of cache files saved before block names were stored in a per-region dictionary
+     */
+    private static final int LEGACY_CACHED_REGION_MAGIC = 456022911;
+
+    private static final ChunkLocations[] EMPTY = new ChunkLocations[0];
 
     /**
      * All of the chunks in this region: A 32x32 array of them.
@@ -68,6 +80,13 @@ public final class CachedRegion implements ICachedRegion {
      */
     private boolean hasUnsavedChanges;
 
+    /**
+     * The packed absolute positions of each special block in this region, grouped by chunk, by tracked id. Built
+     * lazily on the first query. When a chunk changes only its own entries are replaced, the whole index is only
+     * discarded when the region is loaded or chunks expire.
+     */
+    private ChunkLocations[][] locationIndex;
+
     CachedRegion(int x, int z, DimensionType dimension) {
         this.x = x;
         this.z = z;
@@ -90,27 +109,202 @@ public final class CachedRegion implements ICachedRegion {
         return chunks[x >> 4][z >> 4] != null;
     }
 
-    public final ArrayList<BlockPos> getLocationsOf(String block) {
+    /**
+     * @param trackedId The tracked id of the special block, see {@link CachedChunk#trackedId}
+     * @return All known locations of the special block in this region
+     */
+    public synchronized final ArrayList<BlockPos> getLocationsOf(int trackedId) {
         ArrayList<BlockPos> res = new ArrayList<>();
+        for (ChunkLocations chunk : getLocationIndex()[trackedId]) {
+            for (long loc : chunk.locations) {
+                res.add(BlockPos.of(loc));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Offers every known location of the specified special block in this region to {@code nearest}, without
+     * creating a {@link BlockPos} for each of them.
+     */
+    synchronized final void collectNearest(int trackedId, NearestLocations nearest) {
+        for (ChunkLocations chunk : getLocationIndex()[trackedId]) {
+            for (long loc : chunk.locations) {
+                nearest.offer(loc);
+            }
+        }
+    }
+
+    /**
+     * Offers the known locations of the specified special block in this region that are within the y range and the
+     * distance of the center to {@code nearest}. Chunks that can't have any such location, or any location closer
+     * than everything {@code nearest} already has, are skipped without looking at their locations.
+     */
+    synchronized final void collectNearest(int trackedId, NearestLocations nearest, BlockPos center, int minY, int maxY, long maxDistanceSq) {
+        for (ChunkLocations chunk : getLocationIndex()[trackedId]) {
+            int lowY = Math.max(minY, chunk.minY);
+            int highY = Math.min(maxY, chunk.maxY);
+            if (lowY > highY) {
+                continue;
+            }
+            long dx = axisDistance(center.getX(), chunk.chunkX << 4, (chunk.chunkX << 4) + 15);
+            long dy = axisDistance(center.getY(), lowY, highY);
+            long dz = axisDistance(center.getZ(), chunk.chunkZ << 4, (chunk.chunkZ << 4) + 15);
+            long boundSq = dx * dx + dy * dy + dz * dz;
+            if (boundSq > maxDistanceSq || (nearest.isFull() && boundSq > nearest.worstDistanceSq())) {
+                continue;
+            }
+            for (long loc : chunk.locations) {
+                int y = BlockPos.getY(loc);
+                if (y < minY || y > maxY) {
+                    continue;
+                }
+                long ldx = BlockPos.getX(loc) - center.getX();
+                long ldy = y - center.getY();
+                long ldz = BlockPos.getZ(loc) - center.getZ();
+                long distSq = ldx * ldx + ldy * ldy + ldz * ldz;
+                if (distSq <= maxDistanceSq) {
+                    nearest.offer(loc, distSq);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return For each tracked id, the lowest and highest y of the special block in this region, at
+     * {@code 2 * trackedId} and {@code 2 * trackedId + 1}. If there are none, the lowest is greater than the highest.
+     */
+    synchronized final int[] getYRanges() {
+        ChunkLocations[][] index = getLocationIndex();
+        int[] ranges = new int[index.length * 2];
+        for (int trackedId = 0; trackedId < index.length; trackedId++) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (ChunkLocations chunk : index[trackedId]) {
+                min = Math.min(min, chunk.minY);
+                max = Math.max(max, chunk.maxY);
+            }
+            ranges[2 * trackedId] = min;
+            ranges[2 * trackedId + 1] = max;
+        }
+        return ranges;
+    }
+
+    private ChunkLocations[][] getLocationIndex() {
+        if (locationIndex != null) {
+            return locationIndex;
+        }
+        List<List<ChunkLocations>> builder = new ArrayList<>();
+        for (int i = 0; i < CachedChunk.trackedBlockCount(); i++) {
+            builder.add(null);
+        }
         for (int chunkX = 0; chunkX < 32; chunkX++) {
             for (int chunkZ = 0; chunkZ < 32; chunkZ++) {
-                if (chunks[chunkX][chunkZ] == null) {
+                CachedChunk chunk = chunks[chunkX][chunkZ];
+                if (chunk == null) {
                     continue;
                 }
-                ArrayList<BlockPos> locs = chunks[chunkX][chunkZ].getAbsoluteBlocks(block);
-                if (locs != null) {
-                    res.addAll(locs);
+                for (Int2ObjectMap.Entry<List<BlockPos>> entry : chunk.getRelativeBlocks().int2ObjectEntrySet()) {
+                    if (entry.getValue().isEmpty()) {
+                        continue;
+                    }
+                    int trackedId = entry.getIntKey();
+                    if (builder.get(trackedId) == null) {
+                        builder.set(trackedId, new ArrayList<>());
+                    }
+                    builder.get(trackedId).add(new ChunkLocations(chunk, entry.getValue()));
                 }
             }
         }
-        return res;
+        ChunkLocations[][] index = new ChunkLocations[builder.size()][];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = builder.get(i) == null ? EMPTY : builder.get(i).toArray(EMPTY);
+        }
+        locationIndex = index;
+        return index;
+    }
+
+    private static long axisDistance(int coord, int min, int max) {
+        if (coord < min) {
+            return (long) min - coord;
+        }
+        if (coord > max) {
+            return (long) coord - max;
+        }
+        return 0;
     }
 
     public final synchronized void updateCachedChunk(int chunkX, int chunkZ, CachedChunk chunk) {
         this.chunks[chunkX][chunkZ] = chunk;
         hasUnsavedChanges = true;
+        updateLocationIndex(this.x * 32 + chunkX, this.z * 32 + chunkZ, chunk);
     }
 
+    /**
+     * Replaces the entries of a single chunk in the location index, if it's been built
+     *
+     * @param chunkX The absolute x coordinate of the chunk
+     * @param chunkZ The absolute z coordinate of the chunk
+     * @param chunk  What's now cached for that chunk, or {@code null} if nothing is
+     */
+    private void updateLocationIndex(int chunkX, int chunkZ, CachedChunk chunk) {
+        if (locationIndex == null) {
+            return;
+        }
+        for (int trackedId = 0; trackedId < locationIndex.length; trackedId++) {
+            ChunkLocations[] entries = locationIndex[trackedId];
+            List<BlockPos> relative = chunk == null ? null : chunk.getRelativeBlocks().get(trackedId);
+            ChunkLocations replacement = relative == null || relative.isEmpty() ? null : new ChunkLocations(chunk, relative);
+            int at = -1;
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].chunkX == chunkX && entries[i].chunkZ == chunkZ) {
+                    at = i;
+                    break;
+                }
+            }
+            if (at == -1) {
+                if (replacement != null) {
+                    entries = Arrays.copyOf(entries, entries.length + 1);
+                    entries[entries.length - 1] = replacement;
+                }
+            } else if (replacement != null) {
+                entries = entries.clone();
+                entries[at] = replacement;
+            } else {
+                ChunkLocations[] removed = Arrays.copyOf(entries, entries.length - 1);
+                System.arraycopy(entries, at + 1, removed, at, entries.length - at - 1);
+                entries = removed;
+            }
+            locationIndex[trackedId] = entries;
+        }
+    }
+
+
+    /**
+     * Updates the specified positions of an already cached chunk. The update is made to a copy of the chunk, which then
+     * replaces it, so that readers on other threads never see a chunk that's half updated. The chunk is only copied if
+     * something actually changes. Called from the packer thread, since this waits for any save of this region.
+     *
+     * @param chunk     The chunk that the positions are in
+     * @param positions The absolute positions of the blocks that changed
+     * @return Whether the chunk was cached, if it wasn't it has to be packed from scratch instead
+     */
+    public final synchronized boolean updateBlocks(LevelChunk chunk, Collection<BlockPos> positions) {
+        CachedChunk cached = this.chunks[chunk.getPos().x & 31][chunk.getPos().z & 31];
+        if (cached == null) {
+            return false;
+        }
+        if (!ChunkPacker.needsUpdate(cached, chunk, positions)) {
+            return true;
+        }
+        CachedChunk updated = cached.copy();
+        if (ChunkPacker.update(updated, chunk, positions)) {
+            this.chunks[chunk.getPos().x & 31][chunk.getPos().z & 31] = updated;
+            hasUnsavedChanges = true;
+            updateLocationIndex(chunk.getPos().x, chunk.getPos().z, updated);
+        }
+        return true;
+    }
 
     public synchronized final void save(String directory) {
         if (!hasUnsavedChanges) {
@@ -133,58 +327,205 @@ public final class CachedRegion implements ICachedRegion {
                     GZIPOutputStream gzipOut = new GZIPOutputStream(fileOut, 16384);
                     DataOutputStream out = new DataOutputStream(gzipOut)
             ) {
-                out.writeInt(CACHED_REGION_MAGIC);
-                for (int x = 0; x < 32; x++) {
-                    for (int z = 0; z < 32; z++) {
-                        CachedChunk chunk = this.chunks[x][z];
-                        if (chunk == null) {
-                            out.write(CHUNK_NOT_PRESENT);
-                        } else {
-                            out.write(CHUNK_PRESENT);
-                            byte[] chunkBytes = chunk.toByteArray();
-                            out.write(chunkBytes);
-                            // Messy, but fills the empty 0s that should be trailing to fill up the space.
-                            out.write(new byte[chunk.sizeInBytes - chunkBytes.length]);
-                        }
+                write(out);
+            }
+            hasUnsavedChanges = false;
+            System.out.println("Saved region successfully");
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes every chunk of this region in the current format, see {@link #read(DataInputStream)}
+     */
+    synchronized final void write(DataOutputStream out) throws IOException {
+        out.writeInt(CACHED_REGION_MAGIC);
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                CachedChunk chunk = this.chunks[x][z];
+                if (chunk == null) {
+                    out.write(CHUNK_NOT_PRESENT);
+                } else {
+                    out.write(CHUNK_PRESENT);
+                    byte[] chunkBytes = chunk.toByteArray();
+                    out.write(chunkBytes);
+                    // Messy, but fills the empty 0s that should be trailing to fill up the space.
+                    out.write(new byte[chunk.sizeInBytes - chunkBytes.length]);
+                }
+            }
+        }
+        // every block in this region is written by name once, and referred to by its index from then on
+        List<Block> dictionary = new ArrayList<>();
+        Reference2IntOpenHashMap<Block> dictionaryIds = new Reference2IntOpenHashMap<>();
+        dictionaryIds.defaultReturnValue(-1);
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                if (chunks[x][z] != null) {
+                    for (BlockState state : chunks[x][z].getOverview()) {
+                        addToDictionary(state.getBlock(), dictionary, dictionaryIds);
+                    }
+                    for (int trackedId : chunks[x][z].getRelativeBlocks().keySet()) {
+                        addToDictionary(CachedChunk.trackedBlock(trackedId), dictionary, dictionaryIds);
                     }
                 }
-                for (int x = 0; x < 32; x++) {
-                    for (int z = 0; z < 32; z++) {
-                        if (chunks[x][z] != null) {
-                            for (int i = 0; i < 256; i++) {
-                                out.writeUTF(BlockUtils.blockToString(chunks[x][z].getOverview()[i].getBlock()));
-                            }
-                        }
+            }
+        }
+        out.writeShort(dictionary.size());
+        for (Block block : dictionary) {
+            out.writeUTF(BlockUtils.blockToString(block));
+        }
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                if (chunks[x][z] != null) {
+                    for (BlockState state : chunks[x][z].getOverview()) {
+                        out.writeShort(dictionaryIds.getInt(state.getBlock()));
                     }
                 }
-                for (int x = 0; x < 32; x++) {
-                    for (int z = 0; z < 32; z++) {
-                        if (chunks[x][z] != null) {
-                            Map<String, List<BlockPos>> locs = chunks[x][z].getRelativeBlocks();
-                            out.writeShort(locs.entrySet().size());
-                            for (Map.Entry<String, List<BlockPos>> entry : locs.entrySet()) {
-                                out.writeUTF(entry.getKey());
-                                out.writeShort(entry.getValue().size());
-                                for (BlockPos pos : entry.getValue()) {
-                                    out.writeByte((byte) (pos.getZ() << 4 | pos.getX()));
-                                    out.writeInt(pos.getY()-dimension.minY());
-                                }
-                            }
+            }
+        }
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                if (chunks[x][z] != null) {
+                    Int2ObjectMap<List<BlockPos>> locs = chunks[x][z].getRelativeBlocks();
+                    out.writeShort(locs.size());
+                    for (Int2ObjectMap.Entry<List<BlockPos>> entry : locs.int2ObjectEntrySet()) {
+                        out.writeShort(dictionaryIds.getInt(CachedChunk.trackedBlock(entry.getIntKey())));
+                        out.writeShort(entry.getValue().size());
+                        for (BlockPos pos : entry.getValue()) {
+                            out.writeByte((byte) (pos.getZ() << 4 | pos.getX()));
+                            out.writeInt(pos.getY()-dimension.minY());
                         }
                     }
                 }
-                for (int x = 0; x < 32; x++) {
-                    for (int z = 0; z < 32; z++) {
-                        if (chunks[x][z] != null) {
-                            out.writeLong(chunks[x][z].cacheTimestamp);
+            }
+        }
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                if (chunks[x][z] != null) {
+                    out.writeLong(chunks[x][z].cacheTimestamp);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads chunks written by {@link #write(DataOutputStream)}, or in the legacy format that wrote out block names in
+     * full everywhere. Nothing is changed unless the whole stream could be read.
+     */
+    synchronized final void read(DataInputStream in) throws IOException {
+        int magic = in.readInt();
+        boolean legacy;
+        switch (magic) {
+            case CACHED_REGION_MAGIC:
+                legacy = false;
+                break;
+            case LEGACY_CACHED_REGION_MAGIC:
+                // block names are written out in full everywhere, it's rewritten in the new format on the next save
+                legacy = true;
+                break;
+            default:
+                throw new IOException("Bad magic value " + magic);
+        }
+        boolean[][] present = new boolean[32][32];
+        BitSet[][] bitSets = new BitSet[32][32];
+        Int2ObjectOpenHashMap<List<BlockPos>>[][] location = new Int2ObjectOpenHashMap[32][32];
+        BlockState[][][] overview = new BlockState[32][32][];
+        long[][] cacheTimestamp = new long[32][32];
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                int isChunkPresent = in.read();
+                switch (isChunkPresent) {
+                    case CHUNK_PRESENT:
+                        byte[] bytes = new byte[CachedChunk.sizeInBytes(CachedChunk.size(dimension.height()))];
+                        in.readFully(bytes);
+                        bitSets[x][z] = BitSet.valueOf(bytes);
+                        location[x][z] = new Int2ObjectOpenHashMap<>();
+                        //this is top block in columns
+                        overview[x][z] = new BlockState[256];
+                        present[x][z] = true;
+                        break;
+                    case CHUNK_NOT_PRESENT:
+                        break;
+                    default:
+                        throw new IOException("Malformed stream");
+                }
+            }
+        }
+        Block[] dictionary = null;
+        if (!legacy) {
+            dictionary = new Block[in.readShort() & 0xffff];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = BlockUtils.stringToBlockRequired(in.readUTF());
+            }
+        }
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                if (present[x][z]) {
+                    for (int i = 0; i < 256; i++) {
+                        Block block = legacy ? BlockUtils.stringToBlockRequired(in.readUTF()) : dictionary[in.readShort() & 0xffff];
+                        overview[x][z][i] = block.defaultBlockState();
+                    }
+                }
+            }
+        }
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                if (present[x][z]) {
+                    // 16 * 16 * 256 = 65536 so a short is enough
+                    // ^ haha jokes on leijurv, java doesn't have unsigned types so that isn't correct
+                    //   also why would you have more than 32767 special blocks in a chunk
+                    // haha double jokes on you now it works for 65535 not just 32767
+                    int numSpecialBlockTypes = in.readShort() & 0xffff;
+                    for (int i = 0; i < numSpecialBlockTypes; i++) {
+                        Block block = legacy ? BlockUtils.stringToBlockRequired(in.readUTF()) : dictionary[in.readShort() & 0xffff];
+                        int trackedId = CachedChunk.trackedId(block);
+                        List<BlockPos> locs = new ArrayList<>();
+                        if (trackedId != -1) {
+                            // this can only be false if a block stopped being tracked since the file was saved
+                            location[x][z].put(trackedId, locs);
+                        }
+                        int numLocations = in.readShort() & 0xffff;
+                        if (numLocations == 0) {
+                            // an entire chunk full of air can happen in the end
+                            numLocations = 65536;
+                        }
+                        for (int j = 0; j < numLocations; j++) {
+                            byte xz = in.readByte();
+                            int X = xz & 0x0f;
+                            int Z = (xz >>> 4) & 0x0f;
+                            int Y = in.readInt();
+                            locs.add(new BlockPos(X, Y+dimension.minY(), Z));
                         }
                     }
                 }
             }
-            hasUnsavedChanges = false;
-            System.out.println("Saved region successfully");
-        } catch (Exception ex) {
-            ex.printStackTrace();
+        }
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                if (present[x][z]) {
+                    cacheTimestamp[x][z] = in.readLong();
+                }
+            }
+        }
+        // only if the entire file was uncorrupted do we actually set the chunks
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                if (present[x][z]) {
+                    int regionX = this.x;
+                    int regionZ = this.z;
+                    int chunkX = x + 32 * regionX;
+                    int chunkZ = z + 32 * regionZ;
+                    this.chunks[x][z] = new CachedChunk(chunkX, chunkZ, dimension.minY(), dimension.height(), bitSets[x][z], overview[x][z], location[x][z], cacheTimestamp[x][z]);
+                }
+            }
+        }
+    }
+
+    private static void addToDictionary(Block block, List<Block> dictionary, Reference2IntOpenHashMap<Block> dictionaryIds) {
+        if (!dictionaryIds.containsKey(block)) {
+            dictionaryIds.put(block, dictionary.size());
+            dictionary.add(block);
         }
     }
 
@@ -208,96 +549,9 @@ public final class CachedRegion implements ICachedRegion {
                     GZIPInputStream gzipIn = new GZIPInputStream(fileIn, 32768);
                     DataInputStream in = new DataInputStream(gzipIn)
             ) {
-                int magic = in.readInt();
-                if (magic != CACHED_REGION_MAGIC) {
-                    // in the future, if we change the format on disk
-                    // we can keep converters for the old format
-                    // by switching on the magic value, and either loading it normally, or loading through a converter.
-                    throw new IOException("Bad magic value " + magic);
-                }
-                boolean[][] present = new boolean[32][32];
-                BitSet[][] bitSets = new BitSet[32][32];
-                Map<String, List<BlockPos>>[][] location = new Map[32][32];
-                BlockState[][][] overview = new BlockState[32][32][];
-                long[][] cacheTimestamp = new long[32][32];
-                for (int x = 0; x < 32; x++) {
-                    for (int z = 0; z < 32; z++) {
-                        int isChunkPresent = in.read();
-                        switch (isChunkPresent) {
-                            case CHUNK_PRESENT:
-                                byte[] bytes = new byte[CachedChunk.sizeInBytes(CachedChunk.size(dimension.height()))];
-                                in.readFully(bytes);
-                                bitSets[x][z] = BitSet.valueOf(bytes);
-                                location[x][z] = new HashMap<>();
-                                //this is top block in columns
-                                overview[x][z] = new BlockState[256];
-                                present[x][z] = true;
-                                break;
-                            case CHUNK_NOT_PRESENT:
-                                break;
-                            default:
-                                throw new IOException("Malformed stream");
-                        }
-                    }
-                }
-                for (int x = 0; x < 32; x++) {
-                    for (int z = 0; z < 32; z++) {
-                        if (present[x][z]) {
-                            for (int i = 0; i < 256; i++) {
-                                overview[x][z][i] = BlockUtils.stringToBlockRequired(in.readUTF()).defaultBlockState();
-                            }
-                        }
-                    }
-                }
-                for (int x = 0; x < 32; x++) {
-                    for (int z = 0; z < 32; z++) {
-                        if (present[x][z]) {
-                            // 16 * 16 * 256 = 65536 so a short is enough
-                            // ^ haha jokes on leijurv, java doesn't have unsigned types so that isn't correct
-                            //   also why would you have more than 32767 special blocks in a chunk
-                            // haha double jokes on you now it works for 65535 not just 32767
-                            int numSpecialBlockTypes = in.readShort() & 0xffff;
-                            for (int i = 0; i < numSpecialBlockTypes; i++) {
-                                String blockName = in.readUTF();
-                                BlockUtils.stringToBlockRequired(blockName);
-                                List<BlockPos> locs = new ArrayList<>();
-                                location[x][z].put(blockName, locs);
-                                int numLocations = in.readShort() & 0xffff;
-                                if (numLocations == 0) {
-                                    // an entire chunk full of air can happen in the end
-                                    numLocations = 65536;
-                                }
-                                for (int j = 0; j < numLocations; j++) {
-                                    byte xz = in.readByte();
-                                    int X = xz & 0x0f;
-                                    int Z = (xz >>> 4) & 0x0f;
-                                    int Y = in.readInt();
-                                    locs.add(new BlockPos(X, Y+dimension.minY(), Z));
-                                }
-                            }
-                        }
-                    }
-                }
-                for (int x = 0; x < 32; x++) {
-                    for (int z = 0; z < 32; z++) {
-                        if (present[x][z]) {
-                            cacheTimestamp[x][z] = in.readLong();
-                        }
-                    }
-                }
-                // only if the entire file was uncorrupted do we actually set the chunks
-                for (int x = 0; x < 32; x++) {
-                    for (int z = 0; z < 32; z++) {
-                        if (present[x][z]) {
-                            int regionX = this.x;
-                            int regionZ = this.z;
-                            int chunkX = x + 32 * regionX;
-                            int chunkZ = z + 32 * regionZ;
-                            this.chunks[x][z] = new CachedChunk(chunkX, chunkZ, dimension.height(), bitSets[x][z], overview[x][z], location[x][z], cacheTimestamp[x][z]);
-                        }
-                    }
-                }
+                read(in);
             }
+            locationIndex = null;
             removeExpired();
             hasUnsavedChanges = false;
             long end = System.nanoTime() / 1000000L;
@@ -319,6 +573,7 @@ public final class CachedRegion implements ICachedRegion {
                 if (this.chunks[x][z] != null && this.chunks[x][z].cacheTimestamp < oldestAcceptableAge) {
                     System.out.println("Removing chunk " + (x + 32 * this.x) + "," + (z + 32 * this.z) + " because it was cached " + (now - this.chunks[x][z].cacheTimestamp) / 1000L + " seconds ago, and max age is " + expiry);
                     this.chunks[x][z] = null;
+                    locationIndex = null;
                 }
             }
         }
@@ -358,4 +613,32 @@ public final class CachedRegion implements ICachedRegion {
     private static Path getRegionFile(Path cacheDir, int regionX, int regionZ) {
         return Paths.get(cacheDir.toString(), "r." + regionX + "." + regionZ + ".bcr");
     }
+
+    /**
+     * The locations of one special block in one chunk, and the range of their y coordinates
+     */
+    private static final class ChunkLocations {
+
+        private final int chunkX;
+        private final int chunkZ;
+        private final int minY;
+        private final int maxY;
+        private final long[] locations;
+
+        private ChunkLocations(CachedChunk chunk, List<BlockPos> relative) {
+            this.chunkX = chunk.x;
+            this.chunkZ = chunk.z;
+            this.locations = new long[relative.size()];
+            int minY = Integer.MAX_VALUE;
+            int maxY = Integer.MIN_VALUE;
+            for (int i = 0; i < locations.length; i++) {
+                BlockPos pos = relative.get(i);
+                locations[i] = BlockPos.asLong(pos.getX() + chunk.x * 16, pos.getY(), pos.getZ() + chunk.z * 16);
+                minY = Math.min(minY, pos.getY());
+                maxY = Math.max(maxY, pos.getY());
+            }
+            this.minY = minY;
+            this.maxY = maxY;
+        }
+    }
 }
@@ -22,22 +22,31 @@ import baritone.api.BaritoneAPI;
 import baritone.api.IBaritone;
 import baritone.api.cache.ICachedWorld;
 import baritone.api.cache.IWorldData;
+import baritone.api.utils.BlockUtils;
 import baritone.api.utils.Helper;
 import com.google.common.cache.CacheBuilder;
-import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.level.dimension.DimensionType;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 /**
  * @author Brady
@@ -51,9 +60,21 @@ public final class CachedWorld implements ICachedWorld, Helper {
     private static final int REGION_MAX = 30_000_000 / 512 + 1;
 
     /**
-     * A map of all of the cached regions.
+     * Regions further than this many blocks from the player are removed from RAM on save, see {@link #prune()}
      */
-    private Long2ObjectMap<CachedRegion> cachedRegions = new Long2ObjectOpenHashMap<>();
+    private static final int PRUNE_DISTANCE = 1024;
+
+    /**
+     * A map of all of the cached regions. Reads never block, so looking up a region from the pathing thread can't
+     * end up waiting for a region to load.
+     */
+    private final Map<Long, CachedRegion> cachedRegions = new ConcurrentHashMap<>();
+
+    /**
+     * How many regions the current warm up has queued, and how many of those have been loaded so far
+     */
+    private final AtomicInteger warmUpTotal = new AtomicInteger();
+    private final AtomicInteger warmUpLoaded = new AtomicInteger();
 
     /**
      * The directory that the cached region files are saved to
@@ -72,8 +93,29 @@ public final class CachedWorld implements ICachedWorld, Helper {
      */
     private final Map<ChunkPos, LevelChunk> toPackMap = CacheBuilder.newBuilder().softValues().<ChunkPos, LevelChunk>build().asMap();
 
+    /**
+     * Blocks that changed in chunks, pending an update by the packer thread. Like {@link #toPackMap}, every key of this
+     * is in the {@link #toPackQueue}, and further changes to the same chunk are added to the pending entry.
+     */
+    private final Map<ChunkPos, PendingUpdate> toUpdateMap = new ConcurrentHashMap<>();
+
+    /**
+     * Queue of region IDs to load from disk in the background, see {@link #prefetchRegion(int, int)}
+     */
+    private final LinkedBlockingQueue<Long> toPrefetchQueue = new LinkedBlockingQueue<>();
+
+    /**
+     * All region IDs that are either in the prefetch queue or currently being loaded
+     */
+    private final Set<Long> pendingPrefetch = ConcurrentHashMap.newKeySet();
+
     private final DimensionType dimension;
 
+    /**
+     * What special blocks are in the regions that aren't in RAM, so that queries can skip them without a disk read
+     */
+    private final RegionSummaries summaries;
+
     CachedWorld(Path directory, DimensionType dimension) {
         if (!Files.exists(directory)) {
             try {
@@ -83,8 +125,11 @@ public final class CachedWorld implements ICachedWorld, Helper {
         }
         this.directory = directory.toString();
         this.dimension = dimension;
+        this.summaries = new RegionSummaries(directory);
+        this.summaries.load();
         System.out.println("Cached world directory: " + directory);
         Baritone.getExecutor().execute(new PackerThread());
+        Baritone.getExecutor().execute(new PrefetchThread());
         Baritone.getExecutor().execute(() -> {
             try {
                 Thread.sleep(30000);
@@ -108,6 +153,39 @@ public final class CachedWorld implements ICachedWorld, Helper {
         }
     }
 
+    @Override
+    public final void updateBlocks(LevelChunk chunk, Collection<BlockPos> positions) {
+        ChunkPos pos = chunk.getPos();
+        if (toPackMap.containsKey(pos)) {
+            // a full repack is already pending, and it will see these changes
+            return;
+        }
+        boolean[] added = new boolean[1];
+        toUpdateMap.compute(pos, (p, pending) -> {
+            if (pending == null) {
+                pending = new PendingUpdate(chunk);
+                added[0] = true;
+            }
+            pending.positions.addAll(positions);
+            return pending;
+        });
+        if (added[0]) {
+            toPackQueue.add(pos);
+        }
+    }
+
+    /**
+     * Applies pending block changes to a chunk, or packs it from scratch if it isn't cached. Only called from the
+     * packer thread.
+     */
+    private void applyUpdate(PendingUpdate update) {
+        ChunkPos pos = update.chunk.getPos();
+        CachedRegion region = getRegion(pos.x >> 5, pos.z >> 5);
+        if (region == null || !region.updateBlocks(update.chunk, update.positions)) {
+            updateCachedChunk(ChunkPacker.pack(update.chunk));
+        }
+    }
+
     @Override
     public final boolean isCached(int blockX, int blockZ) {
         CachedRegion region = getRegion(blockX >> 9, blockZ >> 9);
@@ -124,6 +202,10 @@ public final class CachedWorld implements ICachedWorld, Helper {
     @Override
     public final ArrayList<BlockPos> getLocationsOf(String block, int maximum, int centerX, int centerZ, int maxRegionDistanceSq) {
         ArrayList<BlockPos> res = new ArrayList<>();
+        int trackedId = trackedId(block);
+        if (trackedId == -1) {
+            return res;
+        }
         int centerRegionX = centerX >> 9;
         int centerRegionZ = centerZ >> 9;
 
@@ -140,7 +222,7 @@ public final class CachedWorld implements ICachedWorld, Helper {
                     CachedRegion region = getOrCreateRegion(regionX, regionZ);
                     if (region != null) {
                         // TODO: 100% verify if this or addAll is faster.
-                        res.addAll(region.getLocationsOf(block));
+                        res.addAll(region.getLocationsOf(trackedId));
                     }
                 }
             }
@@ -152,6 +234,143 @@ public final class CachedWorld implements ICachedWorld, Helper {
         return res;
     }
 
+    @Override
+    public final List<BlockPos> getNearestLocationsOf(String block, int maximum, BlockPos center, int maxRegionDistance) {
+        Block resolved = BlockUtils.stringToBlockNullable(block);
+        if (resolved == null) {
+            return new ArrayList<>();
+        }
+        return getNearestLocationsOf(resolved, maximum, center, maxRegionDistance);
+    }
+
+    /**
+     * Same as {@link #getNearestLocationsOf(String, int, BlockPos, int)}, without going through the block name.
+     */
+    public final List<BlockPos> getNearestLocationsOf(Block block, int maximum, BlockPos center, int maxRegionDistance) {
+        return getNearestLocationsOf(block, maximum, center, maxRegionDistance, Integer.MIN_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public final List<BlockPos> getNearestLocationsOf(String block, int maximum, BlockPos center, int minY, int maxY, int maxDistance) {
+        Block resolved = BlockUtils.stringToBlockNullable(block);
+        if (resolved == null) {
+            return new ArrayList<>();
+        }
+        return getNearestLocationsOf(resolved, maximum, center, minY, maxY, maxDistance);
+    }
+
+    /**
+     * Same as {@link #getNearestLocationsOf(String, int, BlockPos, int, int, int)}, without going through the block
+     * name.
+     */
+    public final List<BlockPos> getNearestLocationsOf(Block block, int maximum, BlockPos center, int minY, int maxY, int maxDistance) {
+        // a region this many regions away is always further than maxDistance
+        int maxRegionDistance = (Math.max(0, maxDistance) >> 9) + 1;
+        return getNearestLocationsOf(block, maximum, center, maxRegionDistance, minY, maxY, (long) maxDistance * maxDistance);
+    }
+
+    /**
+     * Finds the nearest known locations of a block within the y range, in the regions up to the specified number of
+     * regions away from the center's region in each direction, and within the distance.
+     *
+     * @param maxRegionDistance How many regions away from the center's region to look, on each axis
+     * @param maxDistanceSq     The maximum squared distance from the center, or {@link Long#MAX_VALUE} for any
+     */
+    public final List<BlockPos> getNearestLocationsOf(Block block, int maximum, BlockPos center, int maxRegionDistance, int minY, int maxY, long maxDistanceSq) {
+        int trackedId = CachedChunk.trackedId(block);
+        if (trackedId == -1 || minY > maxY) {
+            return new ArrayList<>();
+        }
+        int centerRegionX = center.getX() >> 9;
+        int centerRegionZ = center.getZ() >> 9;
+        int side = 2 * maxRegionDistance + 1;
+        // every region in range, packed as (lower bound of its squared distance to the center << 32 | index)
+        long[] candidates = new long[side * side];
+        for (int xoff = -maxRegionDistance; xoff <= maxRegionDistance; xoff++) {
+            for (int zoff = -maxRegionDistance; zoff <= maxRegionDistance; zoff++) {
+                int regionX = centerRegionX + xoff;
+                int regionZ = centerRegionZ + zoff;
+                long dx = axisDistance(center.getX(), regionX << 9);
+                long dz = axisDistance(center.getZ(), regionZ << 9);
+                int index = (xoff + maxRegionDistance) * side + zoff + maxRegionDistance;
+                candidates[index] = Math.min(dx * dx + dz * dz, Integer.MAX_VALUE) << 32 | index;
+            }
+        }
+        Arrays.sort(candidates);
+
+        NearestLocations nearest = new NearestLocations(maximum, center.getX(), center.getY(), center.getZ());
+        for (long candidate : candidates) {
+            long horizontalSq = candidate >>> 32;
+            if (horizontalSq > maxDistanceSq || (nearest.isFull() && horizontalSq > nearest.worstDistanceSq())) {
+                // regions are sorted by how close they could possibly be, so nothing further can be any better
+                break;
+            }
+            int index = (int) candidate;
+            int regionX = centerRegionX + index / side - maxRegionDistance;
+            int regionZ = centerRegionZ + index % side - maxRegionDistance;
+            if (!isRegionInWorld(regionX, regionZ)) {
+                continue;
+            }
+            long id = getRegionID(regionX, regionZ);
+            CachedRegion region = cachedRegions.get(id);
+            if (region == null) {
+                // before reading it from disk, see if what we know about it rules it out
+                if (!summaries.mightContain(id, trackedId, minY, maxY)) {
+                    continue;
+                }
+                long dy = yDistance(center.getY(), summaries.lowestY(id, trackedId, minY), summaries.highestY(id, trackedId, maxY));
+                long boundSq = horizontalSq + dy * dy;
+                if (boundSq > maxDistanceSq || (nearest.isFull() && boundSq > nearest.worstDistanceSq())) {
+                    continue;
+                }
+                region = getOrCreateRegion(regionX, regionZ);
+            }
+            if (minY == Integer.MIN_VALUE && maxY == Integer.MAX_VALUE && maxDistanceSq == Long.MAX_VALUE) {
+                region.collectNearest(trackedId, nearest);
+            } else {
+                region.collectNearest(trackedId, nearest, center, minY, maxY, maxDistanceSq);
+            }
+        }
+        return nearest.toSortedList();
+    }
+
+    /**
+     * Only the names of special blocks are exposed through the api, so they are resolved to a tracked id once per
+     * query rather than once per region
+     *
+     * @return The tracked id of the specified block, or -1 if it isn't known or isn't tracked
+     */
+    private static int trackedId(String block) {
+        Block resolved = BlockUtils.stringToBlockNullable(block);
+        return resolved == null ? -1 : CachedChunk.trackedId(resolved);
+    }
+
+    /**
+     * @return The distance from {@code y} to the closest y in the range, which may be unbounded
+     */
+    private static long yDistance(int y, int min, int max) {
+        if (y < min) {
+            return (long) min - y;
+        }
+        if (y > max) {
+            return (long) y - max;
+        }
+        return 0;
+    }
+
+    /**
+     * @return The distance from {@code coord} to the closest block in the 512 wide span starting at {@code min}
+     */
+    private static long axisDistance(int coord, int min) {
+        if (coord < min) {
+            return min - coord;
+        }
+        if (coord >= min + 512) {
+            return coord - (min + 511);
+        }
+        return 0;
+    }
+
     private void updateCachedChunk(CachedChunk chunk) {
         CachedRegion region = getOrCreateRegion(chunk.x >> 5, chunk.z >> 5);
         region.updateCachedChunk(chunk.x & 31, chunk.z & 31, chunk);
@@ -173,8 +392,10 @@ public final class CachedWorld implements ICachedWorld, Helper {
         allRegions().parallelStream().forEach(region -> {
             if (region != null) {
                 region.save(this.directory);
+                summaries.put(getRegionID(region.getX(), region.getZ()), region.getYRanges());
             }
         });
+        summaries.save();
         long now = System.nanoTime() / 1000000L;
         System.out.println("World save took " + (now - start) + "ms");
         prune();
@@ -195,9 +416,11 @@ public final class CachedWorld implements ICachedWorld, Helper {
             int distX = ((region.getX() << 9) + 256) - pruneCenter.getX();
             int distZ = ((region.getZ() << 9) + 256) - pruneCenter.getZ();
             double dist = Math.sqrt(distX * distX + distZ * distZ);
-            if (dist > 1024) {
+            if (dist > PRUNE_DISTANCE) {
                 logDebug("Deleting cached region from ram");
-                cachedRegions.remove(getRegionID(region.getX(), region.getZ()));
+                long id = getRegionID(region.getX(), region.getZ());
+                summaries.put(id, region.getYRanges());
+                cachedRegions.remove(id);
             }
         }
     }
@@ -231,14 +454,14 @@ public final class CachedWorld implements ICachedWorld, Helper {
         return new BlockPos((mostRecentlyModified.x << 4) + 8, 0, (mostRecentlyModified.z << 4) + 8);
     }
 
-    private synchronized List<CachedRegion> allRegions() {
+    private List<CachedRegion> allRegions() {
         return new ArrayList<>(this.cachedRegions.values());
     }
 
     @Override
     public final void reloadAllFromDisk() {
         long start = System.nanoTime() / 1000000L;
-        allRegions().forEach(region -> {
+        allRegions().parallelStream().forEach(region -> {
             if (region != null) {
                 region.load(this.directory);
             }
@@ -247,31 +470,139 @@ public final class CachedWorld implements ICachedWorld, Helper {
         System.out.println("World load took " + (now - start) + "ms");
     }
 
+    /**
+     * Starts loading every region on disk around the specified center in the background, closest first, using
+     * several threads. If regions are pruned from RAM, only the regions that wouldn't immediately be pruned again
+     * are loaded. Progress is reported by {@link #getWarmUpProgress()}.
+     *
+     * @param center The position to load regions around, normally the player
+     */
+    public final void warmUp(BlockPos center) {
+        // even listing the directory can take a while if it's big enough
+        Baritone.getExecutor().execute(() -> warmUpFrom(center));
+    }
+
+    private void warmUpFrom(BlockPos center) {
+        List<long[]> toLoad = new ArrayList<>(); // {distance squared, region x, region z}
+        try (Stream<Path> files = Files.list(Paths.get(directory))) {
+            files.forEach(file -> {
+                String[] parts = file.getFileName().toString().split("\\.");
+                if (parts.length != 4 || !parts[0].equals("r") || !parts[3].equals("bcr")) {
+                    return;
+                }
+                int regionX;
+                int regionZ;
+                try {
+                    regionX = Integer.parseInt(parts[1]);
+                    regionZ = Integer.parseInt(parts[2]);
+                } catch (NumberFormatException ex) {
+                    return;
+                }
+                if (!isRegionInWorld(regionX, regionZ) || getRegion(regionX, regionZ) != null) {
+                    return;
+                }
+                long distX = ((regionX << 9) + 256) - center.getX();
+                long distZ = ((regionZ << 9) + 256) - center.getZ();
+                long distSq = distX * distX + distZ * distZ;
+                if (Baritone.settings().pruneRegionsFromRAM.value && distSq > (long) PRUNE_DISTANCE * PRUNE_DISTANCE) {
+                    return;
+                }
+                toLoad.add(new long[]{distSq, regionX, regionZ});
+            });
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return;
+        }
+        toLoad.sort(Comparator.comparingLong(region -> region[0]));
+        warmUpLoaded.set(0);
+        warmUpTotal.set(toLoad.size());
+        if (toLoad.isEmpty()) {
+            return;
+        }
+        System.out.println("Warming up " + toLoad.size() + " cached regions");
+        long start = System.nanoTime() / 1000000L;
+        // every thread takes the closest region that nobody has taken yet, so the closest ones are resident first
+        AtomicInteger next = new AtomicInteger();
+        int threads = Math.min(toLoad.size(), Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        for (int i = 0; i < threads; i++) {
+            Baritone.getExecutor().execute(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < toLoad.size()) {
+                    long[] region = toLoad.get(index);
+                    try {
+                        getOrCreateRegion((int) region[1], (int) region[2]);
+                    } catch (Throwable th) {
+                        th.printStackTrace();
+                    }
+                    if (warmUpLoaded.incrementAndGet() == toLoad.size()) {
+                        long now = System.nanoTime() / 1000000L;
+                        System.out.println("Warm up took " + (now - start) + "ms");
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public final double getWarmUpProgress() {
+        int total = warmUpTotal.get();
+        if (total == 0) {
+            return 1;
+        }
+        return Math.min(1, (double) warmUpLoaded.get() / total);
+    }
+
     @Override
-    public final synchronized CachedRegion getRegion(int regionX, int regionZ) {
+    public final CachedRegion getRegion(int regionX, int regionZ) {
         return cachedRegions.get(getRegionID(regionX, regionZ));
     }
 
     /**
      * Returns the region at the specified region coordinates. If a
      * region is not found, then a new one is created.
+     * <p>
+     * The region is loaded from disk before it's added to the map, so that {@link #getRegion(int, int)} never has to
+     * wait for disk reads.
      *
      * @param regionX The region X coordinate
      * @param regionZ The region Z coordinate
      * @return The region located at the specified coordinates
      */
-    private synchronized CachedRegion getOrCreateRegion(int regionX, int regionZ) {
-        return cachedRegions.computeIfAbsent(getRegionID(regionX, regionZ), id -> {
-            CachedRegion newRegion = new CachedRegion(regionX, regionZ, dimension);
-            newRegion.load(this.directory);
-            return newRegion;
-        });
+    private CachedRegion getOrCreateRegion(int regionX, int regionZ) {
+        long id = getRegionID(regionX, regionZ);
+        CachedRegion existing = cachedRegions.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        CachedRegion newRegion = new CachedRegion(regionX, regionZ, dimension);
+        newRegion.load(this.directory);
+        summaries.put(id, newRegion.getYRanges());
+        // someone else might have gotten here first while we were loading, in which case theirs wins
+        existing = cachedRegions.putIfAbsent(id, newRegion);
+        return existing != null ? existing : newRegion;
     }
 
     public void tryLoadFromDisk(int regionX, int regionZ) {
         getOrCreateRegion(regionX, regionZ);
     }
 
+    /**
+     * Queues the specified region to be loaded from disk in the background, if it isn't loaded already. Unlike
+     * {@link #tryLoadFromDisk(int, int)}, this never blocks the calling thread.
+     *
+     * @param regionX The region X coordinate
+     * @param regionZ The region Z coordinate
+     */
+    public void prefetchRegion(int regionX, int regionZ) {
+        if (!isRegionInWorld(regionX, regionZ) || getRegion(regionX, regionZ) != null) {
+            return;
+        }
+        long id = getRegionID(regionX, regionZ);
+        if (pendingPrefetch.add(id)) {
+            toPrefetchQueue.add(id);
+        }
+    }
+
     /**
      * Returns the region ID based on the region coordinates. 0 will be
      * returned if the specified region coordinates are out of bounds.
@@ -306,9 +637,18 @@ public final class CachedWorld implements ICachedWorld, Helper {
                 try {
                     ChunkPos pos = toPackQueue.take();
                     LevelChunk chunk = toPackMap.remove(pos);
+                    PendingUpdate update = toUpdateMap.remove(pos);
                     if (toPackQueue.size() > Baritone.settings().chunkPackerQueueMaxSize.value) {
                         continue;
                     }
+                    if (chunk == null) {
+                        // otherwise a full repack sees these changes too. if neither is there, the position was queued
+                        // for both and they've already been handled
+                        if (update != null) {
+                            applyUpdate(update);
+                        }
+                        continue;
+                    }
                     CachedChunk cached = ChunkPacker.pack(chunk);
                     CachedWorld.this.updateCachedChunk(cached);
                     //System.out.println("Processed chunk at " + chunk.x + "," + chunk.z);
@@ -322,4 +662,40 @@ public final class CachedWorld implements ICachedWorld, Helper {
             }
         }
     }
+
+    private static final class PendingUpdate {
+
+        private final LevelChunk chunk;
+
+        /**
+         * Only changed inside {@link ConcurrentHashMap#compute}, and only read once removed from the map
+         */
+        private final Set<BlockPos> positions = new HashSet<>();
+
+        private PendingUpdate(LevelChunk chunk) {
+            this.chunk = chunk;
+        }
+    }
+
+    private class PrefetchThread implements Runnable {
+
+        public void run() {
+            while (true) {
+                try {
+                    long id = toPrefetchQueue.take();
+                    try {
+                        // inverse of getRegionID
+                        CachedWorld.this.getOrCreateRegion((int) id, (int) (id >> 32));
+                    } finally {
+                        pendingPrefetch.remove(id);
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                    break;
+                } catch (Throwable th) {
+                    th.printStackTrace();
+                }
+            }
+        }
+    }
 }
@@ -17,9 +17,9 @@
 
 package baritone.cache;
 
-import baritone.api.utils.BlockUtils;
 import baritone.pathing.movement.MovementHelper;
 import baritone.utils.pathing.PathingBlockType;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.block.AirBlock;
 import net.minecraft.world.level.block.Block;
@@ -45,12 +45,14 @@ import static baritone.utils.BlockStateInterface.getFromChunk;
  */
 public final class ChunkPacker {
 
+    private static final int[][] HORIZONTAL_OFFSETS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+
     private ChunkPacker() {}
 
     public static CachedChunk pack(LevelChunk chunk) {
         //long start = System.nanoTime() / 1000000L;
 
-        Map<String, List<BlockPos>> specialBlocks = new HashMap<>();
+        Int2ObjectOpenHashMap<List<BlockPos>> specialBlocks = new Int2ObjectOpenHashMap<>();
         final int height = chunk.getLevel().dimensionType().height();
         BitSet bitSet = new BitSet(CachedChunk.size(height));
         try {
@@ -81,10 +83,14 @@ public final class ChunkPacker {
                             boolean[] bits = getPathingBlockType(state, chunk, x, y, z).getBits();
                             bitSet.set(index, bits[0]);
                             bitSet.set(index + 1, bits[1]);
-                            Block block = state.getBlock();
-                            if (CachedChunk.BLOCKS_TO_KEEP_TRACK_OF.contains(block)) {
-                                String name = BlockUtils.blockToString(block);
-                                specialBlocks.computeIfAbsent(name, b -> new ArrayList<>()).add(new BlockPos(x, y+chunk.getMinBuildHeight(), z));
+                            int trackedId = CachedChunk.trackedId(state.getBlock());
+                            if (trackedId != -1) {
+                                List<BlockPos> locs = specialBlocks.get(trackedId);
+                                if (locs == null) {
+                                    locs = new ArrayList<>();
+                                    specialBlocks.put(trackedId, locs);
+                                }
+                                locs.add(new BlockPos(x, y+chunk.getMinBuildHeight(), z));
                             }
                         }
                     }
@@ -113,7 +119,84 @@ public final class ChunkPacker {
             }
         }
         // @formatter:on
-        return new CachedChunk(chunk.getPos().x, chunk.getPos().z, height, bitSet, blocks, specialBlocks, System.currentTimeMillis());
+        return new CachedChunk(chunk.getPos().x, chunk.getPos().z, chunk.getMinBuildHeight(), height, bitSet, blocks, specialBlocks, System.currentTimeMillis());
+    }
+
+    /**
+     * Updates the specified positions of an already packed chunk in place, instead of repacking the whole chunk.
+     * Water next to a changed block is updated as well, since whether or not it's flowing affects its pathing type.
+     *
+     * @param cached    The packed chunk to update, a {@link CachedChunk#copy()} that nothing else can see yet
+     * @param chunk     The chunk that the positions are in
+     * @param positions The absolute positions of the blocks that changed
+     * @return Whether the cached chunk was modified
+     */
+    public static boolean update(CachedChunk cached, LevelChunk chunk, Collection<BlockPos> positions) {
+        return update(cached, chunk, positions, true);
+    }
+
+    /**
+     * @return Whether {@link #update(CachedChunk, LevelChunk, Collection)} would change anything, so that the cached
+     * chunk is only copied when it would
+     */
+    public static boolean needsUpdate(CachedChunk cached, LevelChunk chunk, Collection<BlockPos> positions) {
+        return update(cached, chunk, positions, false);
+    }
+
+    private static boolean update(CachedChunk cached, LevelChunk chunk, Collection<BlockPos> positions, boolean apply) {
+        final int minY = chunk.getMinBuildHeight();
+        boolean modified = false;
+        for (BlockPos pos : positions) {
+            int x = pos.getX() & 15;
+            int y = pos.getY() - minY;
+            int z = pos.getZ() & 15;
+            if (y < 0 || y >= cached.height) {
+                continue;
+            }
+            modified |= apply ? updateBlock(cached, chunk, x, y, z) : differs(cached, chunk, x, y, z);
+            if (modified && !apply) {
+                return true;
+            }
+            for (int[] offset : HORIZONTAL_OFFSETS) {
+                int nx = x + offset[0];
+                int nz = z + offset[1];
+                if (nx < 0 || nx > 15 || nz < 0 || nz > 15 || !MovementHelper.isWater(getFromChunk(chunk, nx, y, nz))) {
+                    continue;
+                }
+                modified |= apply ? updateBlock(cached, chunk, nx, y, nz) : differs(cached, chunk, nx, y, nz);
+                if (modified && !apply) {
+                    return true;
+                }
+            }
+        }
+        return modified;
+    }
+
+    private static boolean updateBlock(CachedChunk cached, LevelChunk chunk, int x, int y, int z) {
+        BlockState state = getFromChunk(chunk, x, y, z);
+        boolean modified = cached.updateBlock(x, y, z, getPathingBlockType(state, chunk, x, y, z), state.getBlock());
+        if (y >= cached.getHeight(x, z)) {
+            // the surface of this column might have changed, so the overview has to follow it
+            int top = cached.recalculateHeight(x, z);
+            modified |= cached.setOverview(x, z, top < 0 ? Blocks.AIR.defaultBlockState() : getFromChunk(chunk, x, top, z));
+        }
+        return modified;
+    }
+
+    /**
+     * Same as {@link #updateBlock(CachedChunk, LevelChunk, int, int, int)}, without changing anything
+     */
+    private static boolean differs(CachedChunk cached, LevelChunk chunk, int x, int y, int z) {
+        BlockState state = getFromChunk(chunk, x, y, z);
+        if (cached.differs(x, y, z, getPathingBlockType(state, chunk, x, y, z), state.getBlock())) {
+            return true;
+        }
+        if (y >= cached.getHeight(x, z)) {
+            // no type changed, so neither did the height, but the block on top of the column might have
+            int top = cached.findHeight(x, z);
+            return cached.getOverview()[z << 4 | x] != (top < 0 ? Blocks.AIR.defaultBlockState() : getFromChunk(chunk, x, top, z));
+        }
+        return false;
     }
 
     private static PathingBlockType getPathingBlockType(BlockState state, LevelChunk chunk, int x, int y, int z) {
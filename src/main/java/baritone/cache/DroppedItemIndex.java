@@ -0,0 +1,250 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package baritone.cache;
+
+import baritone.Baritone;
+import baritone.api.event.events.EntityEvent;
+import baritone.api.event.events.TickEvent;
+import baritone.api.event.events.WorldEvent;
+import baritone.behavior.Behavior;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMaps;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.Items;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Keeps track of the dropped items in the world, bucketed by item type and then by the 16x16x16 cell they're in, so
+ * that finding the drops a process cares about doesn't mean going through every entity in the world and looking at
+ * its stack.
+ * <p>
+ * Items are added and removed as the world adds and removes them. Since the stack of a new item entity only arrives
+ * after the entity itself, and items move around, the tracked items are put back in the right bucket when drops are
+ * asked for, at most once a tick, so nothing is paid for while no process is looking for drops.
+ */
+public final class DroppedItemIndex extends Behavior {
+
+    /**
+     * Where each tracked item was bucketed
+     */
+    private final Reference2ObjectOpenHashMap<ItemEntity, Bucket> tracked = new Reference2ObjectOpenHashMap<>();
+
+    /**
+     * Item type to {@link SectionPos#asLong} to the items of that type in that cell
+     */
+    private final Reference2ObjectOpenHashMap<Item, Long2ObjectOpenHashMap<List<ItemEntity>>> grid = new Reference2ObjectOpenHashMap<>();
+
+    /**
+     * Whether a tick has passed since the tracked items were last put back in the right bucket
+     */
+    private volatile boolean stale;
+
+    public DroppedItemIndex(Baritone baritone) {
+        super(baritone);
+    }
+
+    /**
+     * @param filter Which item types to include
+     * @return Every dropped item of a type matching the filter
+     */
+    public synchronized List<ItemEntity> getDrops(Predicate<Item> filter) {
+        rebucket();
+        List<ItemEntity> result = new ArrayList<>();
+        for (Reference2ObjectMap.Entry<Item, Long2ObjectOpenHashMap<List<ItemEntity>>> type : Reference2ObjectMaps.fastIterable(grid)) {
+            if (type.getKey() != Items.AIR && filter.test(type.getKey())) {
+                for (List<ItemEntity> cell : type.getValue().values()) {
+                    result.addAll(cell);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param filter Which item types to include
+     * @param center The position to measure distances from
+     * @param radius The maximum distance from the center
+     * @return The dropped items of a type matching the filter that are within the radius of the center
+     */
+    public synchronized List<ItemEntity> getDrops(Predicate<Item> filter, BlockPos center, int radius) {
+        rebucket();
+        List<ItemEntity> result = new ArrayList<>();
+        int minX = (center.getX() - radius) >> 4;
+        int minY = (center.getY() - radius) >> 4;
+        int minZ = (center.getZ() - radius) >> 4;
+        int maxX = (center.getX() + radius) >> 4;
+        int maxY = (center.getY() + radius) >> 4;
+        int maxZ = (center.getZ() + radius) >> 4;
+        long cellsInRange = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+        double radiusSq = (double) radius * radius;
+        for (Reference2ObjectMap.Entry<Item, Long2ObjectOpenHashMap<List<ItemEntity>>> type : Reference2ObjectMaps.fastIterable(grid)) {
+            if (type.getKey() == Items.AIR || !filter.test(type.getKey())) {
+                continue;
+            }
+            Long2ObjectOpenHashMap<List<ItemEntity>> cells = type.getValue();
+            if (cells.size() < cellsInRange) {
+                // fewer occupied cells than cells in range, so go through the occupied ones
+                for (Long2ObjectMap.Entry<List<ItemEntity>> cell : Long2ObjectMaps.fastIterable(cells)) {
+                    long key = cell.getLongKey();
+                    int x = SectionPos.x(key);
+                    int y = SectionPos.y(key);
+                    int z = SectionPos.z(key);
+                    if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) {
+                        addInRange(result, cell.getValue(), center, radiusSq);
+                    }
+                }
+            } else {
+                for (int x = minX; x <= maxX; x++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        for (int z = minZ; z <= maxZ; z++) {
+                            List<ItemEntity> cell = cells.get(SectionPos.asLong(x, y, z));
+                            if (cell != null) {
+                                addInRange(result, cell, center, radiusSq);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void onEntityEvent(EntityEvent event) {
+        if (!(event.getEntity() instanceof ItemEntity)) {
+            return;
+        }
+        ItemEntity item = (ItemEntity) event.getEntity();
+        if (event.getType() == EntityEvent.Type.ADD) {
+            if (!tracked.containsKey(item)) {
+                Bucket bucket = new Bucket(item.getItem().getItem(), cell(item));
+                tracked.put(item, bucket);
+                add(bucket, item);
+            }
+        } else {
+            Bucket bucket = tracked.remove(item);
+            if (bucket != null) {
+                remove(bucket, item);
+            }
+        }
+    }
+
+    @Override
+    public void onTick(TickEvent event) {
+        if (event.getType() == TickEvent.Type.IN) {
+            stale = true;
+        }
+    }
+
+    @Override
+    public synchronized void onWorldEvent(WorldEvent event) {
+        // the new world's entities will be added like any others
+        tracked.clear();
+        grid.clear();
+    }
+
+    /**
+     * Puts every tracked item back in the bucket for its current type and cell, and forgets removed ones, unless that
+     * was already done this tick
+     */
+    private void rebucket() {
+        if (!stale) {
+            return;
+        }
+        stale = false;
+        ObjectIterator<Reference2ObjectMap.Entry<ItemEntity, Bucket>> it = Reference2ObjectMaps.fastIterator(tracked);
+        while (it.hasNext()) {
+            Reference2ObjectMap.Entry<ItemEntity, Bucket> entry = it.next();
+            ItemEntity item = entry.getKey();
+            Bucket bucket = entry.getValue();
+            if (item.isRemoved()) {
+                // not every way out of the world goes through removeEntity
+                it.remove();
+                remove(bucket, item);
+                continue;
+            }
+            Item type = item.getItem().getItem();
+            long cell = cell(item);
+            if (type != bucket.item || cell != bucket.cell) {
+                remove(bucket, item);
+                bucket.item = type;
+                bucket.cell = cell;
+                add(bucket, item);
+            }
+        }
+    }
+
+    private void add(Bucket bucket, ItemEntity item) {
+        grid.computeIfAbsent(bucket.item, type -> new Long2ObjectOpenHashMap<>())
+                .computeIfAbsent(bucket.cell, cell -> new ArrayList<>())
+                .add(item);
+    }
+
+    private void remove(Bucket bucket, ItemEntity item) {
+        Long2ObjectOpenHashMap<List<ItemEntity>> cells = grid.get(bucket.item);
+        if (cells == null) {
+            return;
+        }
+        List<ItemEntity> cell = cells.get(bucket.cell);
+        if (cell == null) {
+            return;
+        }
+        cell.remove(item);
+        if (cell.isEmpty()) {
+            cells.remove(bucket.cell);
+            if (cells.isEmpty()) {
+                grid.remove(bucket.item);
+            }
+        }
+    }
+
+    private static void addInRange(List<ItemEntity> result, List<ItemEntity> cell, BlockPos center, double radiusSq) {
+        for (ItemEntity item : cell) {
+            if (item.distanceToSqr(center.getX() + 0.5, center.getY() + 0.5, center.getZ() + 0.5) <= radiusSq) {
+                result.add(item);
+            }
+        }
+    }
+
+    private static long cell(Entity entity) {
+        return SectionPos.asLong(entity.getBlockX() >> 4, entity.getBlockY() >> 4, entity.getBlockZ() >> 4);
+    }
+
+    private static final class Bucket {
+
+        private Item item;
+        private long cell;
+
+        private Bucket(Item item, long cell) {
+            this.item = item;
+            this.cell = cell;
+        }
+    }
+}
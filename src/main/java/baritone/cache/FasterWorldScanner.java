@@ -23,18 +23,17 @@ import baritone.api.utils.BetterBlockPos;
 import baritone.api.utils.BlockOptionalMetaLookup;
 import baritone.api.utils.IPlayerContext;
 import baritone.utils.accessor.IPalettedContainer;
-import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.IdMapper;
-import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.util.BitStorage;
 import net.minecraft.world.level.ChunkPos;
-import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -50,6 +49,57 @@ public enum FasterWorldScanner implements IWorldScanner {
         return scanChunksInternal(ctx, filter, getChunkRange(ctx.playerFeet().x >> 4, ctx.playerFeet().z >> 4, maxSearchRadius), max);
     }
 
+    @Override
+    public void scanNearest(IPlayerContext ctx, BlockOptionalMetaLookup filter, int max, int maxSearchRadius, Predicate<BlockPos> consumer) {
+        assert ctx.world() != null;
+        if (maxSearchRadius < 0) {
+            throw new IllegalArgumentException("chunkRange must be >= 0");
+        }
+        ChunkSource chunkProvider = ctx.world().getChunkSource();
+        BetterBlockPos feet = ctx.playerFeet();
+        int centerX = feet.x >> 4;
+        int centerZ = feet.z >> 4;
+        int remaining = max < 0 ? Integer.MAX_VALUE : max;
+        // matches that were found, but that something in a ring we haven't scanned yet could still be closer than
+        List<BlockPos> pending = Collections.emptyList();
+        for (int ring = 0; ring < maxSearchRadius && remaining > 0; ring++) {
+            // loaded chunks aren't necessarily a square around the player, there can be holes anywhere, so an empty
+            // ring doesn't mean that there's nothing further out
+            List<LevelChunk> chunks = new ArrayList<>();
+            for (int x = centerX - ring; x <= centerX + ring; x++) {
+                // the whole edge at the top and bottom of the ring, and only the sides in between
+                int step = x == centerX - ring || x == centerX + ring ? 1 : Math.max(1, 2 * ring);
+                for (int z = centerZ - ring; z <= centerZ + ring; z += step) {
+                    LevelChunk chunk = chunkProvider.getChunk(x, z, false);
+                    if (chunk != null && !chunk.isEmpty()) {
+                        chunks.add(chunk);
+                    }
+                }
+            }
+            NearestLocations nearest = new NearestLocations(remaining, feet.x, feet.y, feet.z);
+            for (BlockPos pos : pending) {
+                nearest.offer(pos.asLong());
+            }
+            chunks.parallelStream().forEach(chunk -> scanChunkNearest(filter, chunk, feet, nearest));
+            List<BlockPos> found = nearest.toSortedList();
+
+            // everything closer than any block outside of this ring can be handed out already
+            long boundSq = ring + 1 < maxSearchRadius ? outsideDistanceSq(feet, centerX, centerZ, ring) : Long.MAX_VALUE;
+            int i = 0;
+            for (; i < found.size() && distanceSq(found.get(i), feet) <= boundSq; i++) {
+                if (!consumer.test(found.get(i)) || --remaining == 0) {
+                    return;
+                }
+            }
+            pending = found.subList(i, found.size());
+        }
+        for (BlockPos pos : pending) {
+            if (!consumer.test(pos) || --remaining == 0) {
+                return;
+            }
+        }
+    }
+
     @Override
     public List<BlockPos> scanChunk(IPlayerContext ctx, BlockOptionalMetaLookup filter, ChunkPos pos, int max, int yLevelThreshold) {
         Stream<BlockPos> stream = scanChunkInternal(ctx, filter, pos);
@@ -155,7 +205,7 @@ public enum FasterWorldScanner implements IWorldScanner {
 
     private List<BlockPos> collectChunkSections(BlockOptionalMetaLookup lookup, LevelChunk chunk, long chunkX, long chunkZ, int playerSection) {
         // iterate over sections relative to player
-        List<BlockPos> blocks = new ArrayList<>();
+        LongArrayList blocks = new LongArrayList();
         int chunkY = chunk.getMinBuildHeight();
         LevelChunkSection[] sections = chunk.getSections();
         int l = sections.length;
@@ -169,10 +219,91 @@ public enum FasterWorldScanner implements IWorldScanner {
                 visitSection(lookup, sections[i], blocks, chunkX, chunkY + i * 16, chunkZ);
             }
         }
-        return blocks;
+        List<BlockPos> result = new ArrayList<>(blocks.size());
+        for (int k = 0; k < blocks.size(); k++) {
+            result.add(BlockPos.of(blocks.getLong(k)));
+        }
+        return result;
+    }
+
+    /**
+     * Scans a chunk into the nearest matches found so far, skipping any section that can't have anything closer than
+     * them. This is called for many chunks at once, so {@code nearest} is only touched while holding its lock.
+     */
+    private void scanChunkNearest(BlockOptionalMetaLookup lookup, LevelChunk chunk, BlockPos center, NearestLocations nearest) {
+        int chunkX = chunk.getPos().x << 4;
+        int chunkZ = chunk.getPos().z << 4;
+        long dx = axisDistance(center.getX(), chunkX);
+        long dz = axisDistance(center.getZ(), chunkZ);
+        long horizontalSq = dx * dx + dz * dz;
+        int chunkY = chunk.getMinBuildHeight();
+        LevelChunkSection[] sections = chunk.getSections();
+        int playerSection = Math.max(0, Math.min(sections.length - 1, (center.getY() - chunkY) >> 4));
+        LongArrayList found = new LongArrayList();
+        // sections closest to the player first, so that the ones after are more likely to be skipped
+        for (int i = playerSection - 1, j = playerSection; i >= 0 || j < sections.length; ++j, --i) {
+            if (j < sections.length) {
+                scanSectionNearest(lookup, sections[j], found, chunkX, chunkY + j * 16, chunkZ, horizontalSq, center, nearest);
+            }
+            if (i >= 0) {
+                scanSectionNearest(lookup, sections[i], found, chunkX, chunkY + i * 16, chunkZ, horizontalSq, center, nearest);
+            }
+        }
+    }
+
+    private void scanSectionNearest(BlockOptionalMetaLookup lookup, LevelChunkSection section, LongArrayList found, int chunkX, int sectionY, int chunkZ, long horizontalSq, BlockPos center, NearestLocations nearest) {
+        long dy = axisDistance(center.getY(), sectionY);
+        synchronized (nearest) {
+            if (nearest.isFull() && horizontalSq + dy * dy > nearest.worstDistanceSq()) {
+                return;
+            }
+        }
+        visitSection(lookup, section, found, chunkX, sectionY, chunkZ);
+        if (found.isEmpty()) {
+            return;
+        }
+        synchronized (nearest) {
+            for (int k = 0; k < found.size(); k++) {
+                nearest.offer(found.getLong(k));
+            }
+        }
+        found.clear();
+    }
+
+    /**
+     * @return The squared distance from the center to the closest block outside of the chunks within {@code ring}
+     * chunks of the center chunk
+     */
+    private static long outsideDistanceSq(BlockPos center, int centerChunkX, int centerChunkZ, int ring) {
+        long minX = (long) (centerChunkX - ring) << 4;
+        long maxX = ((long) (centerChunkX + ring) << 4) + 15;
+        long minZ = (long) (centerChunkZ - ring) << 4;
+        long maxZ = ((long) (centerChunkZ + ring) << 4) + 15;
+        long distance = Math.min(
+                Math.min(center.getX() - (minX - 1), (maxX + 1) - center.getX()),
+                Math.min(center.getZ() - (minZ - 1), (maxZ + 1) - center.getZ())
+        );
+        return distance * distance;
+    }
+
+    private static long distanceSq(BlockPos pos, BlockPos center) {
+        long dx = pos.getX() - center.getX();
+        long dy = pos.getY() - center.getY();
+        long dz = pos.getZ() - center.getZ();
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static long axisDistance(int coord, int min) {
+        if (coord < min) {
+            return min - coord;
+        }
+        if (coord >= min + 16) {
+            return coord - (min + 15);
+        }
+        return 0;
     }
 
-    private void visitSection(BlockOptionalMetaLookup lookup, LevelChunkSection section, List<BlockPos> blocks, long chunkX, int sectionY, long chunkZ) {
+    private void visitSection(BlockOptionalMetaLookup lookup, LevelChunkSection section, LongArrayList blocks, long chunkX, int sectionY, long chunkZ) {
         if (section == null || section.hasOnlyAir()) {
             return;
         }
@@ -183,7 +314,8 @@ public enum FasterWorldScanner implements IWorldScanner {
             return;
         }
 
-        boolean[] isInFilter = getIncludedFilterIndices(lookup, ((IPalettedContainer<BlockState>) sectionContainer).getPalette());
+        // usually answered from the summary of the section without even looking at the palette
+        boolean[] isInFilter = SectionSummary.getIncludedFilterIndices(sectionContainer, lookup);
         if (isInFilter.length == 0) {
             return;
         }
@@ -200,7 +332,7 @@ public enum FasterWorldScanner implements IWorldScanner {
                 int value = (int) ((l >> offset) & maxEntryValue);
                 if (isInFilter[value]) {
                     //noinspection DuplicateExpressions
-                    blocks.add(new BlockPos(
+                    blocks.add(BlockPos.asLong(
                         (int) chunkX + ((idx & 255) & 15),
                         sectionY + (idx >> 8),
                         (int) chunkZ + ((idx & 255) >> 4)
@@ -209,47 +341,4 @@ public enum FasterWorldScanner implements IWorldScanner {
             }
         }
     }
-
-    private boolean[] getIncludedFilterIndices(BlockOptionalMetaLookup lookup, Palette<BlockState> palette) {
-        boolean commonBlockFound = false;
-        IdMapper<BlockState> paletteMap = getPalette(palette);
-        int size = paletteMap.size();
-
-        boolean[] isInFilter = new boolean[size];
-
-        for (int i = 0; i < size; i++) {
-            BlockState state = paletteMap.byId(i);
-            if (lookup.has(state)) {
-                isInFilter[i] = true;
-                commonBlockFound = true;
-            } else {
-                isInFilter[i] = false;
-            }
-        }
-
-        if (!commonBlockFound) {
-            return new boolean[0];
-        }
-        return isInFilter;
-    }
-
-    /**
-     * cheats to get the actual map of id -> blockstate from the various palette implementations
-     */
-    private static IdMapper<BlockState> getPalette(Palette<BlockState> palette) {
-        if (palette instanceof GlobalPalette) {
-            return Block.BLOCK_STATE_REGISTRY;
-        } else {
-            FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
-            palette.write(buf);
-            int size = buf.readVarInt();
-            IdMapper<BlockState> states = new IdMapper<>();
-            for (int i = 0; i < size; i++) {
-                BlockState state = Block.BLOCK_STATE_REGISTRY.byId(buf.readVarInt());
-                assert state != null;
-                states.addMapping(state, i);
-            }
-            return states;
-        }
-    }
 }
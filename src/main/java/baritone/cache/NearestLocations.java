@@ -0,0 +1,146 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package baritone.cache;
+
+import net.minecraft.core.BlockPos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the closest {@code maximum} of the packed positions offered to it, in a bounded binary max-heap keyed on the
+ * squared distance to a center. Nothing is allocated per offered position.
+ */
+final class NearestLocations {
+
+    private final int maximum;
+    private final int centerX;
+    private final int centerY;
+    private final int centerZ;
+
+    private long[] positions;
+    private long[] distances;
+    private int size;
+
+    NearestLocations(int maximum, int centerX, int centerY, int centerZ) {
+        this.maximum = maximum;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.centerZ = centerZ;
+        // maximum is commonly Integer.MAX_VALUE, so grow as needed rather than allocating it all up front
+        int initial = Math.max(1, Math.min(maximum, 64));
+        this.positions = new long[initial];
+        this.distances = new long[initial];
+    }
+
+    /**
+     * @return Whether {@code maximum} positions have been found
+     */
+    boolean isFull() {
+        return size >= maximum;
+    }
+
+    /**
+     * @return The squared distance of the furthest position kept, only meaningful once {@link #isFull()}
+     */
+    long worstDistanceSq() {
+        return size == 0 ? Long.MAX_VALUE : distances[0];
+    }
+
+    void offer(long packed) {
+        long dx = BlockPos.getX(packed) - centerX;
+        long dy = BlockPos.getY(packed) - centerY;
+        long dz = BlockPos.getZ(packed) - centerZ;
+        offer(packed, dx * dx + dy * dy + dz * dz);
+    }
+
+    void offer(long packed, long distSq) {
+        if (size < maximum) {
+            if (size == positions.length) {
+                int capacity = (int) Math.min(maximum, positions.length * 2L);
+                positions = Arrays.copyOf(positions, capacity);
+                distances = Arrays.copyOf(distances, capacity);
+            }
+            positions[size] = packed;
+            distances[size] = distSq;
+            siftUp(size++);
+        } else if (maximum > 0 && distSq < distances[0]) {
+            positions[0] = packed;
+            distances[0] = distSq;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * @return The positions kept, closest first. This empties the heap.
+     */
+    List<BlockPos> toSortedList() {
+        // heapsort in place, repeatedly moving the furthest to the end
+        int count = size;
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        size = 0;
+        List<BlockPos> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(BlockPos.of(positions[i]));
+        }
+        return result;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (distances[parent] >= distances[index]) {
+                return;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, int end) {
+        while (true) {
+            int largest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < end && distances[left] > distances[largest]) {
+                largest = left;
+            }
+            if (right < end && distances[right] > distances[largest]) {
+                largest = right;
+            }
+            if (largest == index) {
+                return;
+            }
+            swap(index, largest);
+            index = largest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long pos = positions[a];
+        positions[a] = positions[b];
+        positions[b] = pos;
+        long dist = distances[a];
+        distances[a] = distances[b];
+        distances[b] = dist;
+    }
+}
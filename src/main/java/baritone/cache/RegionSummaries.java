@@ -0,0 +1,180 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package baritone.cache;
+
+import baritone.api.utils.BlockUtils;
+import net.minecraft.world.level.block.Block;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * For every region that has been in RAM, the range of y coordinates each special block was found at in it, see
+ * {@link CachedRegion#getYRanges()}. This is saved next to the region files, so that a query can tell that a region
+ * on disk has nothing it's looking for without reading the region.
+ */
+final class RegionSummaries {
+
+    private static final int MAGIC = 456022913;
+
+    private final Path file;
+
+    /**
+     * Region id to y ranges, as returned by {@link CachedRegion#getYRanges()}
+     */
+    private final Map<Long, int[]> summaries = new ConcurrentHashMap<>();
+
+    private volatile boolean dirty;
+
+    RegionSummaries(Path directory) {
+        this.file = directory.resolve("summaries.bin");
+    }
+
+    void put(long regionId, int[] yRanges) {
+        int[] previous = summaries.put(regionId, yRanges);
+        if (!Arrays.equals(previous, yRanges)) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * @return Whether the region might have the special block somewhere within the y range. If nothing is known
+     * about the region, it might.
+     */
+    boolean mightContain(long regionId, int trackedId, int minY, int maxY) {
+        int[] ranges = summaries.get(regionId);
+        if (ranges == null) {
+            return true;
+        }
+        return Math.max(minY, ranges[2 * trackedId]) <= Math.min(maxY, ranges[2 * trackedId + 1]);
+    }
+
+    /**
+     * @return The lowest y the special block could be at in the region, no lower than {@code minY}. If nothing is
+     * known about the region, it could be anywhere, so that's {@code minY}.
+     */
+    int lowestY(long regionId, int trackedId, int minY) {
+        int[] ranges = summaries.get(regionId);
+        return ranges == null ? minY : Math.max(minY, ranges[2 * trackedId]);
+    }
+
+    /**
+     * @return The highest y the special block could be at in the region, no higher than {@code maxY}. If nothing is
+     * known about the region, it could be anywhere, so that's {@code maxY}.
+     */
+    int highestY(long regionId, int trackedId, int maxY) {
+        int[] ranges = summaries.get(regionId);
+        return ranges == null ? maxY : Math.min(maxY, ranges[2 * trackedId + 1]);
+    }
+
+    synchronized void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file))))) {
+            read(in, name -> {
+                Block block = BlockUtils.stringToBlockNullable(name);
+                return block == null ? -1 : CachedChunk.trackedId(block);
+            }, CachedChunk.trackedBlockCount()).forEach(summaries::putIfAbsent);
+        } catch (Exception ex) {
+            // not knowing anything only means that regions have to be read to find out
+            ex.printStackTrace();
+        }
+    }
+
+    synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(file))))) {
+            String[] names = new String[CachedChunk.trackedBlockCount()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = BlockUtils.blockToString(CachedChunk.trackedBlock(i));
+            }
+            write(out, names, new HashMap<>(summaries));
+        } catch (IOException ex) {
+            dirty = true;
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * @param trackedNames The name of the block with each tracked id
+     * @param summaries    Region id to y ranges
+     */
+    static void write(DataOutputStream out, String[] trackedNames, Map<Long, int[]> summaries) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(trackedNames.length);
+        for (String name : trackedNames) {
+            out.writeUTF(name);
+        }
+        out.writeInt(summaries.size());
+        for (Map.Entry<Long, int[]> entry : summaries.entrySet()) {
+            out.writeLong(entry.getKey());
+            for (int value : entry.getValue()) {
+                out.writeInt(value);
+            }
+        }
+    }
+
+    /**
+     * @param trackedIds   The tracked id of the block with each name, or -1 if it isn't tracked anymore
+     * @param trackedCount How many blocks are tracked now
+     * @return Region id to y ranges, by the tracked ids of now
+     */
+    static Map<Long, int[]> read(DataInputStream in, ToIntFunction<String> trackedIds, int trackedCount) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Bad magic value");
+        }
+        // the tracked ids can change between versions, so the file refers to blocks by name
+        int[] ids = new int[in.readShort() & 0xffff];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = trackedIds.applyAsInt(in.readUTF());
+        }
+        int count = in.readInt();
+        Map<Long, int[]> summaries = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            long regionId = in.readLong();
+            // a block that's tracked now but wasn't when this was saved could be anywhere
+            int[] ranges = new int[trackedCount * 2];
+            for (int j = 0; j < ranges.length; j += 2) {
+                ranges[j] = Integer.MIN_VALUE;
+                ranges[j + 1] = Integer.MAX_VALUE;
+            }
+            for (int trackedId : ids) {
+                int min = in.readInt();
+                int max = in.readInt();
+                if (trackedId != -1) {
+                    ranges[2 * trackedId] = min;
+                    ranges[2 * trackedId + 1] = max;
+                }
+            }
+            summaries.put(regionId, ranges);
+        }
+        return summaries;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package baritone.cache;
+
+import baritone.utils.accessor.IPalettedContainer;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.util.BitStorage;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.Palette;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Scans chunks for everything that anything in a world is looking for at once. Each section is walked a single time
+ * no matter how many filters there are, and the matches are handed to every subscriber that wants them.
+ * <p>
+ * There is one of these per world, shared by every bot in it, so when several of them see the same chunk arrive it's
+ * only scanned by the first. A chunk is scanned again once any of its sections changed or the subscribers did.
+ */
+public final class SectionScanService {
+
+    private static final Map<Level, SectionScanService> SERVICES = new WeakHashMap<>();
+
+    private final List<Subscriber> subscribers = new ArrayList<>();
+
+    /**
+     * Incremented whenever the subscribers change, since chunks that were scanned before haven't been scanned for them
+     */
+    private int generation;
+
+    /**
+     * For each chunk that was scanned, the modification counts of its sections at the time, followed by the generation
+     */
+    private final Map<LevelChunk, int[]> scanned = new WeakHashMap<>();
+
+    private SectionScanService() {}
+
+    /**
+     * @param world The world
+     * @return The service shared by everything in that world
+     */
+    public static synchronized SectionScanService forWorld(Level world) {
+        return SERVICES.computeIfAbsent(world, w -> new SectionScanService());
+    }
+
+    public synchronized void subscribe(Subscriber subscriber) {
+        if (!subscribers.contains(subscriber)) {
+            subscribers.add(subscriber);
+            generation++;
+        }
+    }
+
+    public synchronized void unsubscribe(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            generation++;
+        }
+    }
+
+    /**
+     * Scans the chunk for every subscriber, unless it was already scanned for them and hasn't changed since.
+     *
+     * @param chunk The chunk
+     */
+    public synchronized void scanChunk(LevelChunk chunk) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        LevelChunkSection[] sections = chunk.getSections();
+        int[] state = new int[sections.length + 1];
+        for (int i = 0; i < sections.length; i++) {
+            state[i] = sections[i] == null ? -1 : ((IPalettedContainer<?>) sections[i].getStates()).getModificationCount();
+        }
+        state[sections.length] = generation;
+        int[] previous = scanned.put(chunk, state);
+        if (previous != null && Arrays.equals(previous, state)) {
+            return;
+        }
+        scan(chunk, subscribers);
+    }
+
+    /**
+     * Scans a chunk for the specified subscribers only, walking each section once for all of them.
+     *
+     * @param chunk       The chunk
+     * @param subscribers The subscribers
+     */
+    public static void scan(LevelChunk chunk, List<? extends Subscriber> subscribers) {
+        // masks are a long, so anything past 64 subscribers takes another pass
+        for (int from = 0; from < subscribers.size(); from += 64) {
+            scan0(chunk, subscribers.subList(from, Math.min(subscribers.size(), from + 64)));
+        }
+    }
+
+    private static void scan0(LevelChunk chunk, List<? extends Subscriber> subscribers) {
+        int count = subscribers.size();
+        LongArrayList[] positions = new LongArrayList[count];
+        IntArrayList[] stateIds = new IntArrayList[count];
+        for (int k = 0; k < count; k++) {
+            positions[k] = new LongArrayList();
+            stateIds[k] = new IntArrayList();
+        }
+        int chunkX = chunk.getPos().x;
+        int chunkZ = chunk.getPos().z;
+        LevelChunkSection[] sections = chunk.getSections();
+        for (int i = 0; i < sections.length; i++) {
+            int sectionY = chunk.getSectionYFromSectionIndex(i);
+            for (int k = 0; k < count; k++) {
+                positions[k].clear();
+                stateIds[k].clear();
+            }
+            LevelChunkSection section = sections[i];
+            if (section != null && !section.hasOnlyAir()) {
+                walk(section, subscribers, chunkX << 4, sectionY << 4, chunkZ << 4, positions, stateIds);
+            }
+            for (int k = 0; k < count; k++) {
+                subscribers.get(k).accept(chunkX, sectionY, chunkZ, positions[k], stateIds[k]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void walk(LevelChunkSection section, List<? extends Subscriber> subscribers, int x0, int y0, int z0, LongArrayList[] positions, IntArrayList[] stateIds) {
+        IPalettedContainer<BlockState> container = (IPalettedContainer<BlockState>) section.getStates();
+        Palette<BlockState> palette = container.getPalette();
+        BitStorage storage = container.getStorage();
+        if (palette == null || storage == null) {
+            return;
+        }
+        // for each palette index, which subscribers want that block state. for the global palette, which has every
+        // block state in it, this is only worked out for the ones that are actually used
+        int size = palette.getSize();
+        long[] masks = new long[size];
+        boolean[] known = new boolean[size];
+        int[] ids = new int[size];
+        if (size <= 256) {
+            // not the global palette, so it's cheap to find out up front whether anything here is wanted at all
+            long any = 0;
+            for (int value = 0; value < size; value++) {
+                any |= mask(palette, subscribers, masks, known, ids, value);
+            }
+            if (any == 0) {
+                return;
+            }
+        }
+        int bits = storage.getBits();
+        if (bits == 0) {
+            // a section of a single block state
+            long mask = known[0] ? masks[0] : mask(palette, subscribers, masks, known, ids, 0);
+            if (mask != 0) {
+                for (int idx = 0; idx < 4096; idx++) {
+                    dispatch(mask, ids[0], idx, x0, y0, z0, positions, stateIds);
+                }
+            }
+            return;
+        }
+        long[] raw = storage.getRaw();
+        int entries = storage.getSize();
+        long maxEntryValue = (1L << bits) - 1L;
+        for (int i = 0, idx = 0; i < raw.length && idx < entries; ++i) {
+            long l = raw[i];
+            for (int offset = 0; offset <= (64 - bits) && idx < entries; offset += bits, ++idx) {
+                int value = (int) ((l >> offset) & maxEntryValue);
+                long mask = known[value] ? masks[value] : mask(palette, subscribers, masks, known, ids, value);
+                if (mask != 0) {
+                    dispatch(mask, ids[value], idx, x0, y0, z0, positions, stateIds);
+                }
+            }
+        }
+    }
+
+    private static long mask(Palette<BlockState> palette, List<? extends Subscriber> subscribers, long[] masks, boolean[] known, int[] ids, int value) {
+        BlockState state = palette.valueFor(value);
+        long mask = 0;
+        for (int k = 0; k < subscribers.size(); k++) {
+            if (subscribers.get(k).wants(state)) {
+                mask |= 1L << k;
+            }
+        }
+        masks[value] = mask;
+        known[value] = true;
+        ids[value] = Block.getId(state);
+        return mask;
+    }
+
+    private static void dispatch(long mask, int stateId, int idx, int x0, int y0, int z0, LongArrayList[] positions, IntArrayList[] stateIds) {
+        long pos = BlockPos.asLong(x0 | (idx & 15), y0 | (idx >> 8), z0 | ((idx >> 4) & 15));
+        for (long m = mask; m != 0; m &= m - 1) {
+            int k = Long.numberOfTrailingZeros(m);
+            positions[k].add(pos);
+            stateIds[k].add(stateId);
+        }
+    }
+
+    /**
+     * Something that wants to know where certain block states are
+     */
+    public interface Subscriber {
+
+        /**
+         * @param state A block state
+         * @return Whether matches of this block state should be handed to {@link #accept}
+         */
+        boolean wants(BlockState state);
+
+        /**
+         * Called for every section of a scanned chunk, including those where nothing was found.
+         *
+         * @param chunkX    The x coordinate of the chunk
+         * @param sectionY  The y coordinate of the section
+         * @param chunkZ    The z coordinate of the chunk
+         * @param positions The {@link BlockPos#asLong packed} positions of the matches, only valid during the call
+         * @param stateIds  The block state id of each match
+         */
+        void accept(int chunkX, int sectionY, int chunkZ, LongArrayList positions, IntArrayList stateIds);
+    }
+}
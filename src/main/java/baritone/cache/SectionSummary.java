@@ -0,0 +1,159 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package baritone.cache;
+
+import baritone.api.utils.BlockOptionalMetaLookup;
+import baritone.utils.accessor.IPalettedContainer;
+import io.netty.buffer.Unpooled;
+import net.minecraft.core.IdMapper;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.GlobalPalette;
+import net.minecraft.world.level.chunk.Palette;
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+/**
+ * Which block states are in the palette of a chunk section, so that a scan can tell whether the section could
+ * contain anything it's looking for without decoding the section or even the palette again.
+ * <p>
+ * A summary is attached to the {@link PalettedContainer} it describes, and is thrown away once the container's
+ * modification count moves on.
+ *
+ * @see IPalettedContainer#getModificationCount()
+ */
+public final class SectionSummary {
+
+    private static final boolean[] NONE = new boolean[0];
+
+    /**
+     * How many filters to remember the result for. Different scans take turns on the same sections, like mining,
+     * the target index and the section scan service, each with their own filter.
+     */
+    private static final int RECENT_FILTERS = 4;
+
+    /**
+     * The modification count of the container when this was created
+     */
+    private final int modificationCount;
+
+    /**
+     * The palette, index to block state. This is the registry itself for the global palette.
+     */
+    private final IdMapper<BlockState> palette;
+
+    /**
+     * The ids of the block states in the palette, by palette index. {@code null} for the global palette, where the
+     * palette index is the id.
+     */
+    private final int[] ids;
+
+    /**
+     * The results of the most recent {@link #getIncludedFilterIndices} calls with different filters, most recent
+     * first. Replaced as a whole, never changed.
+     */
+    private volatile FilterResult[] recent = new FilterResult[0];
+
+    private SectionSummary(int modificationCount, IdMapper<BlockState> palette) {
+        this.modificationCount = modificationCount;
+        this.palette = palette;
+        if (palette == Block.BLOCK_STATE_REGISTRY) {
+            this.ids = null;
+        } else {
+            this.ids = new int[palette.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = Block.getId(palette.byId(i));
+            }
+        }
+    }
+
+    /**
+     * @param container The block states of a section
+     * @param lookup    The filter
+     * @return For each palette index, whether that block state matches the filter, or an empty array if none do
+     */
+    @SuppressWarnings("unchecked")
+    public static boolean[] getIncludedFilterIndices(PalettedContainer<BlockState> container, BlockOptionalMetaLookup lookup) {
+        IPalettedContainer<BlockState> accessor = (IPalettedContainer<BlockState>) container;
+        // read before the palette, so that if the container changes while we read it, this is already out of date
+        int modificationCount = accessor.getModificationCount();
+        SectionSummary summary = accessor.getSummary();
+        if (summary == null || summary.modificationCount != modificationCount) {
+            summary = new SectionSummary(modificationCount, getPalette(accessor.getPalette()));
+            accessor.setSummary(summary);
+        }
+        return summary.getIncludedFilterIndices(lookup);
+    }
+
+    private boolean[] getIncludedFilterIndices(BlockOptionalMetaLookup lookup) {
+        FilterResult[] recent = this.recent;
+        for (FilterResult result : recent) {
+            if (result.lookup == lookup) {
+                return result.isInFilter;
+            }
+        }
+        // only bit tests against the lookup's compiled block states from here on
+        boolean[] isInFilter = new boolean[palette.size()];
+        boolean commonBlockFound = false;
+        for (int i = 0; i < isInFilter.length; i++) {
+            if (lookup.hasStateId(ids == null ? i : ids[i])) {
+                isInFilter[i] = true;
+                commonBlockFound = true;
+            }
+        }
+        if (!commonBlockFound) {
+            isInFilter = NONE;
+        }
+        FilterResult[] next = new FilterResult[Math.min(recent.length + 1, RECENT_FILTERS)];
+        next[0] = new FilterResult(lookup, isInFilter);
+        System.arraycopy(recent, 0, next, 1, next.length - 1);
+        this.recent = next;
+        return isInFilter;
+    }
+
+    /**
+     * cheats to get the actual map of id -> blockstate from the various palette implementations
+     */
+    private static IdMapper<BlockState> getPalette(Palette<BlockState> palette) {
+        if (palette instanceof GlobalPalette) {
+            return Block.BLOCK_STATE_REGISTRY;
+        } else {
+            FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+            palette.write(buf);
+            int size = buf.readVarInt();
+            IdMapper<BlockState> states = new IdMapper<>();
+            for (int i = 0; i < size; i++) {
+                BlockState state = Block.BLOCK_STATE_REGISTRY.byId(buf.readVarInt());
+                assert state != null;
+                states.addMapping(state, i);
+            }
+            return states;
+        }
+    }
+
+    private static final class FilterResult {
+
+        private final BlockOptionalMetaLookup lookup;
+        private final boolean[] isInFilter;
+
+        private FilterResult(BlockOptionalMetaLookup lookup, boolean[] isInFilter) {
+            this.lookup = lookup;
+            this.isInFilter = isInFilter;
+        }
+    }
+}
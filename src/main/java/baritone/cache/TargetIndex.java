@@ -0,0 +1,451 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package baritone.cache;
+
+import baritone.Baritone;
+import baritone.api.event.events.BlockChangeEvent;
+import baritone.api.event.events.ChunkEvent;
+import baritone.api.event.events.WorldEvent;
+import baritone.api.event.events.type.EventState;
+import baritone.api.utils.BlockOptionalMetaLookup;
+import baritone.api.utils.Pair;
+import baritone.behavior.Behavior;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMaps;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.ChunkSource;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps track of where the blocks that processes are looking for are in the loaded chunks, so that finding the closest
+ * ones doesn't mean scanning every loaded chunk again.
+ * <p>
+ * Chunks are scanned once when they arrive, and after that only the changed blocks are looked at. Positions are
+ * bucketed by chunk section, so a query only visits the sections that could have something closer than what it has
+ * already found.
+ * <p>
+ * The scanning itself goes through the {@link SectionScanService} of the world, so that it's shared with any other
+ * bot in the same world.
+ */
+public final class TargetIndex extends Behavior implements SectionScanService.Subscriber {
+
+    /**
+     * Block state id to the number of {@link #track(BlockOptionalMetaLookup) tracked} filters that include it
+     */
+    private final Int2IntOpenHashMap trackedStates = new Int2IntOpenHashMap();
+
+    /**
+     * {@link SectionPos#asLong} to the positions of the tracked blocks in that section, and their block state ids
+     */
+    private final Long2ObjectOpenHashMap<Long2IntOpenHashMap> sections = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * Block state id to the number of {@link Seed seeds} for it that are still running. Filters including any of
+     * these aren't answered yet, since the loaded chunks haven't all been looked at for them.
+     */
+    private final Int2IntOpenHashMap seeding = new Int2IntOpenHashMap();
+
+    /**
+     * How many seeds are running, and while there are any, the positions that changed and the chunks that were
+     * populated or unloaded since the first one started. Seeds leave those alone, since what they saw may be older.
+     */
+    private int seeds;
+    private final LongOpenHashSet changedWhileSeeding = new LongOpenHashSet();
+    private final LongOpenHashSet chunksWhileSeeding = new LongOpenHashSet();
+
+    /**
+     * Incremented when the world changes, so that seeds started in the previous one are ignored
+     */
+    private int generation;
+
+    /**
+     * The service this is subscribed to, only while anything is tracked. Only used from the game thread, and never
+     * while holding the lock on this, since the service calls back into this while holding its own.
+     */
+    private SectionScanService subscribedTo;
+
+    public TargetIndex(Baritone baritone) {
+        super(baritone);
+    }
+
+    /**
+     * Starts indexing the blocks matching the specified filter. Each call should be paired with a call to
+     * {@link #untrack(BlockOptionalMetaLookup)} once the filter is no longer needed.
+     * <p>
+     * Chunks that are already loaded won't be populated again, so those within the radius are scanned for any newly
+     * tracked blocks in the background. Until that's done, {@link #getNearest} doesn't answer for the filter.
+     *
+     * @param filter The filter
+     * @param radius How far around the player, in chunks, the loaded chunks are scanned
+     */
+    public void track(BlockOptionalMetaLookup filter, int radius) {
+        IntSet added = new IntOpenHashSet();
+        synchronized (this) {
+            for (int id : stateIds(filter)) {
+                if (trackedStates.addTo(id, 1) == 0) {
+                    added.add(id);
+                }
+            }
+        }
+        updateSubscription();
+        if (added.isEmpty() || ctx.world() == null || ctx.player() == null) {
+            return;
+        }
+        List<LevelChunk> chunks = new ArrayList<>();
+        ChunkSource chunkSource = ctx.world().getChunkSource();
+        int playerChunkX = ctx.playerFeet().x >> 4;
+        int playerChunkZ = ctx.playerFeet().z >> 4;
+        for (int x = playerChunkX - radius; x <= playerChunkX + radius; x++) {
+            for (int z = playerChunkZ - radius; z <= playerChunkZ + radius; z++) {
+                LevelChunk chunk = chunkSource.getChunk(x, z, false);
+                if (chunk != null && !chunk.isEmpty()) {
+                    chunks.add(chunk);
+                }
+            }
+        }
+        Seed seed;
+        synchronized (this) {
+            seed = new Seed(added, generation);
+            for (int id : added) {
+                seeding.addTo(id, 1);
+            }
+            seeds++;
+        }
+        Baritone.getExecutor().execute(() -> {
+            try {
+                List<Seed> subscribers = Collections.singletonList(seed);
+                for (LevelChunk chunk : chunks) {
+                    SectionScanService.scan(chunk, subscribers);
+                }
+            } finally {
+                synchronized (this) {
+                    for (int id : seed.ids) {
+                        if (seeding.addTo(id, -1) <= 1) {
+                            seeding.remove(id);
+                        }
+                    }
+                    if (--seeds == 0) {
+                        changedWhileSeeding.clear();
+                        chunksWhileSeeding.clear();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops indexing the blocks matching the specified filter, unless another tracked filter also matches them.
+     *
+     * @param filter The filter, previously passed to {@link #track(BlockOptionalMetaLookup)}
+     */
+    public void untrack(BlockOptionalMetaLookup filter) {
+        untrack0(filter);
+        updateSubscription();
+    }
+
+    private synchronized void untrack0(BlockOptionalMetaLookup filter) {
+        boolean removed = false;
+        for (int id : stateIds(filter)) {
+            int count = trackedStates.get(id);
+            if (count > 1) {
+                trackedStates.put(id, count - 1);
+            } else {
+                trackedStates.remove(id);
+                removed = true;
+            }
+        }
+        if (trackedStates.isEmpty()) {
+            sections.clear();
+            return;
+        }
+        if (!removed) {
+            return;
+        }
+        ObjectIterator<Long2ObjectMap.Entry<Long2IntOpenHashMap>> sectionIt = Long2ObjectMaps.fastIterator(sections);
+        while (sectionIt.hasNext()) {
+            Long2IntOpenHashMap section = sectionIt.next().getValue();
+            ObjectIterator<Long2IntMap.Entry> it = Long2IntMaps.fastIterator(section);
+            while (it.hasNext()) {
+                if (!trackedStates.containsKey(it.next().getIntValue())) {
+                    it.remove();
+                }
+            }
+            if (section.isEmpty()) {
+                sectionIt.remove();
+            }
+        }
+    }
+
+    /**
+     * @param filter The filter
+     * @return Whether every block state matching the filter is being indexed
+     */
+    public synchronized boolean isTracked(BlockOptionalMetaLookup filter) {
+        for (int id : stateIds(filter)) {
+            if (!trackedStates.containsKey(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the closest loaded blocks matching the specified filter. This is safe to call from any thread.
+     *
+     * @param filter  The filter, which has to be {@link #isTracked(BlockOptionalMetaLookup) tracked}
+     * @param maximum The maximum number of positions to return
+     * @param center  The position to measure distances from
+     * @return The closest positions, closest first, or {@code null} if the filter isn't tracked or the loaded chunks
+     * are still being scanned for it
+     */
+    public synchronized List<BlockPos> getNearest(BlockOptionalMetaLookup filter, int maximum, BlockPos center) {
+        if (!isTracked(filter)) {
+            return null;
+        }
+        if (!seeding.isEmpty()) {
+            for (int id : stateIds(filter)) {
+                if (seeding.containsKey(id)) {
+                    return null;
+                }
+            }
+        }
+        long[] keys = sections.keySet().toLongArray();
+        long[] candidates = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            long dx = axisDistance(center.getX(), SectionPos.x(keys[i]) << 4);
+            long dy = axisDistance(center.getY(), SectionPos.y(keys[i]) << 4);
+            long dz = axisDistance(center.getZ(), SectionPos.z(keys[i]) << 4);
+            candidates[i] = Math.min(dx * dx + dy * dy + dz * dz, Integer.MAX_VALUE) << 32 | i;
+        }
+        Arrays.sort(candidates);
+
+        NearestLocations nearest = new NearestLocations(maximum, center.getX(), center.getY(), center.getZ());
+        for (long candidate : candidates) {
+            if (nearest.isFull() && (candidate >>> 32) > nearest.worstDistanceSq()) {
+                // every remaining section is further away than everything we've got
+                break;
+            }
+            ObjectIterator<Long2IntMap.Entry> it = Long2IntMaps.fastIterator(sections.get(keys[(int) candidate]));
+            while (it.hasNext()) {
+                Long2IntMap.Entry entry = it.next();
+                if (filter.has(Block.stateById(entry.getIntValue()))) {
+                    nearest.offer(entry.getLongKey());
+                }
+            }
+        }
+        return nearest.toSortedList();
+    }
+
+    @Override
+    public void onChunkEvent(ChunkEvent event) {
+        if (ctx.world() == null) {
+            return;
+        }
+        if (event.isPostPopulate()) {
+            synchronized (this) {
+                if (seeds > 0) {
+                    chunksWhileSeeding.add(ChunkPos.asLong(event.getX(), event.getZ()));
+                }
+            }
+            updateSubscription();
+            if (subscribedTo != null) {
+                // every section is handed back to accept, which replaces whatever was there
+                subscribedTo.scanChunk(ctx.world().getChunk(event.getX(), event.getZ()));
+            }
+        } else if (event.getState() == EventState.PRE && event.getType() == ChunkEvent.Type.UNLOAD) {
+            synchronized (this) {
+                if (seeds > 0) {
+                    chunksWhileSeeding.add(ChunkPos.asLong(event.getX(), event.getZ()));
+                }
+                remove(ctx.world(), event.getX(), event.getZ());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onBlockChange(BlockChangeEvent event) {
+        if (trackedStates.isEmpty()) {
+            return;
+        }
+        for (Pair<BlockPos, BlockState> change : event.getBlocks()) {
+            BlockPos pos = change.first();
+            long key = SectionPos.asLong(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+            int id = Block.getId(change.second());
+            if (seeds > 0) {
+                changedWhileSeeding.add(pos.asLong());
+            }
+            if (trackedStates.containsKey(id)) {
+                section(key).put(pos.asLong(), id);
+            } else {
+                Long2IntOpenHashMap section = sections.get(key);
+                if (section != null) {
+                    section.remove(pos.asLong());
+                    if (section.isEmpty()) {
+                        sections.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onWorldEvent(WorldEvent event) {
+        // the new world's chunks will be populated like any others
+        synchronized (this) {
+            sections.clear();
+            generation++;
+        }
+        updateSubscription();
+    }
+
+    @Override
+    public synchronized boolean wants(BlockState state) {
+        return trackedStates.containsKey(Block.getId(state));
+    }
+
+    @Override
+    public synchronized void accept(int chunkX, int sectionY, int chunkZ, LongArrayList positions, IntArrayList stateIds) {
+        long key = SectionPos.asLong(chunkX, sectionY, chunkZ);
+        if (positions.isEmpty()) {
+            sections.remove(key);
+            return;
+        }
+        Long2IntOpenHashMap section = new Long2IntOpenHashMap(positions.size());
+        for (int i = 0; i < positions.size(); i++) {
+            section.put(positions.getLong(i), stateIds.getInt(i));
+        }
+        sections.put(key, section);
+    }
+
+    /**
+     * Subscribes to the service of the current world while anything is tracked, and unsubscribes otherwise
+     */
+    private void updateSubscription() {
+        boolean tracking;
+        synchronized (this) {
+            tracking = !trackedStates.isEmpty();
+        }
+        Level world = ctx.world();
+        SectionScanService service = tracking && world != null ? SectionScanService.forWorld(world) : null;
+        if (service == subscribedTo) {
+            return;
+        }
+        if (subscribedTo != null) {
+            subscribedTo.unsubscribe(this);
+        }
+        if (service != null) {
+            service.subscribe(this);
+        }
+        subscribedTo = service;
+    }
+
+    private void remove(Level world, int chunkX, int chunkZ) {
+        for (int sectionY = world.getMinSection(); sectionY < world.getMaxSection(); sectionY++) {
+            sections.remove(SectionPos.asLong(chunkX, sectionY, chunkZ));
+        }
+    }
+
+    private Long2IntOpenHashMap section(long key) {
+        Long2IntOpenHashMap section = sections.get(key);
+        if (section == null) {
+            section = new Long2IntOpenHashMap();
+            sections.put(key, section);
+        }
+        return section;
+    }
+
+    /**
+     * Adds the blocks that just started being tracked to what's already known about a chunk. Runs off the game
+     * thread, and merges each section into the index under its lock.
+     */
+    private final class Seed implements SectionScanService.Subscriber {
+
+        private final IntSet ids;
+        private final int generation;
+
+        private Seed(IntSet ids, int generation) {
+            this.ids = ids;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean wants(BlockState state) {
+            return ids.contains(Block.getId(state));
+        }
+
+        @Override
+        public void accept(int chunkX, int sectionY, int chunkZ, LongArrayList positions, IntArrayList stateIds) {
+            if (positions.isEmpty()) {
+                return;
+            }
+            synchronized (TargetIndex.this) {
+                if (generation != TargetIndex.this.generation || chunksWhileSeeding.contains(ChunkPos.asLong(chunkX, chunkZ))) {
+                    return;
+                }
+                long key = SectionPos.asLong(chunkX, sectionY, chunkZ);
+                for (int i = 0; i < positions.size(); i++) {
+                    long pos = positions.getLong(i);
+                    int id = stateIds.getInt(i);
+                    // untracked in the meantime, or changed since this section was looked at
+                    if (trackedStates.containsKey(id) && !changedWhileSeeding.contains(pos)) {
+                        section(key).put(pos, id);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] stateIds(BlockOptionalMetaLookup filter) {
+        return filter.blocks().stream()
+                .flatMap(bom -> bom.getAllBlockStates().stream())
+                .mapToInt(Block::getId)
+                .distinct()
+                .toArray();
+    }
+
+    private static long axisDistance(int coord, int min) {
+        if (coord < min) {
+            return min - coord;
+        }
+        if (coord >= min + 16) {
+            return coord - (min + 15);
+        }
+        return 0;
+    }
+}
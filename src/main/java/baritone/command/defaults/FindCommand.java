@@ -57,12 +57,11 @@ public class FindCommand extends Command {
         BetterBlockPos origin = ctx.playerFeet();
         Component[] components = toFind.stream()
                 .flatMap(block ->
-                        ctx.worldData().getCachedWorld().getLocationsOf(
+                        ctx.worldData().getCachedWorld().getNearestLocationsOf(
                                 BuiltInRegistries.BLOCK.getKey(block).getPath(),
                                 Integer.MAX_VALUE,
-                                origin.x,
-                                origin.y,
-                                4
+                                origin,
+                                2
                         ).stream()
                 )
                 .map(BetterBlockPos::new)
@@ -24,16 +24,16 @@ import baritone.api.event.listener.IEventBus;
 import baritone.api.event.listener.IGameEventListener;
 import baritone.api.utils.Helper;
 import baritone.api.utils.Pair;
-import baritone.cache.CachedChunk;
 import baritone.cache.WorldProvider;
 import baritone.utils.BlockStateInterface;
+import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
-import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.LevelChunk;
 
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
 
 /**
  * @author Brady
@@ -112,22 +112,22 @@ public final class GameEventHandler implements IEventBus, Helper {
     @Override
     public void onBlockChange(BlockChangeEvent event) {
         if (Baritone.settings().repackOnAnyBlockChange.value) {
-            final boolean keepingTrackOf = event.getBlocks().stream()
-                    .map(Pair::second).map(BlockState::getBlock)
-                    .anyMatch(CachedChunk.BLOCKS_TO_KEEP_TRACK_OF::contains);
-
-            if (keepingTrackOf) {
-                baritone.getWorldProvider().ifWorldLoaded(worldData -> {
-                    final Level world = baritone.getPlayerContext().world();
-                    ChunkPos pos = event.getChunkPos();
-                    worldData.getCachedWorld().queueForPacking(world.getChunk(pos.x, pos.z));
-                });
-            }
+            baritone.getWorldProvider().ifWorldLoaded(worldData -> {
+                final Level world = baritone.getPlayerContext().world();
+                ChunkPos pos = event.getChunkPos();
+                List<BlockPos> positions = event.getBlocks().stream().map(Pair::first).collect(Collectors.toList());
+                worldData.getCachedWorld().updateBlocks(world.getChunk(pos.x, pos.z), positions);
+            });
         }
 
         listeners.forEach(l -> l.onBlockChange(event));
     }
 
+    @Override
+    public void onEntityEvent(EntityEvent event) {
+        listeners.forEach(l -> l.onEntityEvent(event));
+    }
+
     @Override
     public final void onRenderPass(RenderEvent event) {
         listeners.forEach(l -> l.onRenderPass(event));
@@ -0,0 +1,233 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.process;
+
+import baritone.Baritone;
+import baritone.api.Settings;
+import com.google.common.collect.ImmutableMap;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import net.minecraft.world.level.block.AirBlock;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.LiquidBlock;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.properties.Property;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Whether a block state is good enough where the builder wants another, memoized per pair of block state ids, so
+ * that after the first time it's a single lookup instead of going through the settings and comparing properties.
+ * <p>
+ * Everything is forgotten whenever one of the settings this depends on is set to something else. The memo is split
+ * into stripes with a lock each, since the background recalc asks from several threads at once.
+ */
+final class BlockStateEquivalence {
+
+    private static final byte VALID_KNOWN = 1;
+    private static final byte VALID = 1 << 1;
+    private static final byte VALID_ITEM_KNOWN = 1 << 2;
+    private static final byte VALID_ITEM = 1 << 3;
+    private static final byte SAME_KNOWN = 1 << 4;
+    private static final byte SAME = 1 << 5;
+
+    private static final int STRIPES = 16;
+
+    /**
+     * Don't let a stripe grow forever if something asks about every pair of states there is
+     */
+    private static final int MAX_STRIPE_SIZE = 1 << 16;
+
+    private volatile Table table;
+
+    /**
+     * @param current    The state that's there
+     * @param desired    The state the schematic wants, {@code null} if it doesn't care
+     * @param itemVerify Whether this is about an item we'd place, rather than something already in the world
+     * @return Whether the current state is good enough
+     */
+    boolean valid(BlockState current, BlockState desired, boolean itemVerify) {
+        if (desired == null) {
+            return true;
+        }
+        Table table = table();
+        long key = key(current, desired);
+        Long2ByteOpenHashMap stripe = table.stripe(key);
+        byte known = itemVerify ? VALID_ITEM_KNOWN : VALID_KNOWN;
+        byte value = itemVerify ? VALID_ITEM : VALID;
+        synchronized (stripe) {
+            byte flags = stripe.get(key);
+            if ((flags & known) == 0) {
+                flags |= known;
+                if (table.computeValid(current, desired, itemVerify)) {
+                    flags |= value;
+                }
+                put(stripe, key, flags);
+            }
+            return (flags & value) != 0;
+        }
+    }
+
+    /**
+     * @return Whether the states are the same, apart from the properties that are ignored
+     */
+    boolean same(BlockState first, BlockState second) {
+        Table table = table();
+        long key = key(first, second);
+        Long2ByteOpenHashMap stripe = table.stripe(key);
+        synchronized (stripe) {
+            byte flags = stripe.get(key);
+            if ((flags & SAME_KNOWN) == 0) {
+                flags |= SAME_KNOWN;
+                if (table.computeSame(first, second)) {
+                    flags |= SAME;
+                }
+                put(stripe, key, flags);
+            }
+            return (flags & SAME) != 0;
+        }
+    }
+
+    /**
+     * Forgets everything, for a new build
+     */
+    void reset() {
+        table = null;
+    }
+
+    private Table table() {
+        Table table = this.table;
+        if (table == null || !table.isCurrent()) {
+            synchronized (this) {
+                table = this.table;
+                if (table == null || !table.isCurrent()) {
+                    table = new Table(Baritone.settings());
+                    this.table = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    private static void put(Long2ByteOpenHashMap stripe, long key, byte flags) {
+        if (stripe.size() >= MAX_STRIPE_SIZE) {
+            stripe.clear();
+        }
+        stripe.put(key, flags);
+    }
+
+    /**
+     * @return The desired state id in the upper half and the current state id in the lower half
+     */
+    private static long key(BlockState current, BlockState desired) {
+        return (long) Block.getId(desired) << 32 | Block.getId(current);
+    }
+
+    /**
+     * The memo for one set of setting values
+     */
+    private static final class Table {
+
+        private final Long2ByteOpenHashMap[] stripes = new Long2ByteOpenHashMap[STRIPES];
+
+        private final Boolean okIfWater;
+        private final List<Block> okIfAir;
+        private final List<Block> buildIgnoreBlocks;
+        private final List<Block> buildSkipBlocks;
+        private final Map<Block, List<Block>> buildValidSubstitutes;
+        private final Boolean buildIgnoreDirection;
+        private final List<String> buildIgnoreProperties;
+
+        private Table(Settings settings) {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Long2ByteOpenHashMap();
+            }
+            this.okIfWater = settings.okIfWater.value;
+            this.okIfAir = settings.okIfAir.value;
+            this.buildIgnoreBlocks = settings.buildIgnoreBlocks.value;
+            this.buildSkipBlocks = settings.buildSkipBlocks.value;
+            this.buildValidSubstitutes = settings.buildValidSubstitutes.value;
+            this.buildIgnoreDirection = settings.buildIgnoreDirection.value;
+            this.buildIgnoreProperties = settings.buildIgnoreProperties.value;
+        }
+
+        private Long2ByteOpenHashMap stripe(long key) {
+            return stripes[(int) HashCommon.mix(key) & (STRIPES - 1)];
+        }
+
+        private boolean isCurrent() {
+            Settings settings = Baritone.settings();
+            return okIfWater == settings.okIfWater.value
+                    && okIfAir == settings.okIfAir.value
+                    && buildIgnoreBlocks == settings.buildIgnoreBlocks.value
+                    && buildSkipBlocks == settings.buildSkipBlocks.value
+                    && buildValidSubstitutes == settings.buildValidSubstitutes.value
+                    && buildIgnoreDirection == settings.buildIgnoreDirection.value
+                    && buildIgnoreProperties == settings.buildIgnoreProperties.value;
+        }
+
+        private boolean computeSame(BlockState first, BlockState second) {
+            if (first.getBlock() != second.getBlock()) {
+                return false;
+            }
+            boolean ignoreDirection = buildIgnoreDirection;
+            List<String> ignoredProps = buildIgnoreProperties;
+            if (!ignoreDirection && ignoredProps.isEmpty()) {
+                return first.equals(second); // early return if no properties are being ignored
+            }
+            ImmutableMap<Property<?>, Comparable<?>> map1 = first.getValues();
+            ImmutableMap<Property<?>, Comparable<?>> map2 = second.getValues();
+            for (Property<?> prop : map1.keySet()) {
+                if (map1.get(prop) != map2.get(prop)
+                        && !(ignoreDirection && BuilderProcess.orientationProps.contains(prop))
+                        && !ignoredProps.contains(prop.getName())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean computeValid(BlockState current, BlockState desired, boolean itemVerify) {
+            if (current.getBlock() instanceof LiquidBlock && okIfWater) {
+                return true;
+            }
+            if (current.getBlock() instanceof AirBlock && desired.getBlock() instanceof AirBlock) {
+                return true;
+            }
+            if (current.getBlock() instanceof AirBlock && okIfAir.contains(desired.getBlock())) {
+                return true;
+            }
+            if (desired.getBlock() instanceof AirBlock && buildIgnoreBlocks.contains(current.getBlock())) {
+                return true;
+            }
+            if (buildSkipBlocks.contains(desired.getBlock()) && !itemVerify) {
+                return true;
+            }
+            if (buildValidSubstitutes.getOrDefault(desired.getBlock(), Collections.emptyList()).contains(current.getBlock()) && !itemVerify) {
+                return true;
+            }
+            if (current.equals(desired)) {
+                return true;
+            }
+            return computeSame(current, desired);
+        }
+    }
+}
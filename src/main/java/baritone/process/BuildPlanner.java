@@ -0,0 +1,135 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.process;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import net.minecraft.core.BlockPos;
+
+/**
+ * Decides which part of a build to work on next, so that the builder finishes one area before it moves on instead of
+ * zig-zagging between everything that's left, and so that path calculation gets a handful of goals at a time instead
+ * of all of them.
+ * <p>
+ * The remaining work is split into cells of 8x8 columns. The builder sticks with a cell until there's nothing left to
+ * do in it, then moves on to the closest cell, nearest neighbour style, where cells with work further down count as
+ * closer since what's above may depend on it. A cell that couldn't be pathed to is left alone for a while.
+ */
+final class BuildPlanner {
+
+    static final long NONE = Long.MIN_VALUE;
+
+    private static final int CELL_BITS = 3;
+
+    /**
+     * How many blocks of horizontal distance one block further up is worth when choosing the next cell
+     */
+    private static final double HEIGHT_PENALTY = 4;
+
+    /**
+     * How long a cell that couldn't be pathed to is left alone
+     */
+    private static final long SKIP_MS = 10_000;
+
+    private long current = NONE;
+
+    /**
+     * Cells that couldn't be pathed to, and until when they're left alone
+     */
+    private final Long2LongOpenHashMap skipped = new Long2LongOpenHashMap();
+
+    /**
+     * @param work Positions with something left to do, packed with {@link BlockPos#asLong}
+     * @param from Where the player is
+     * @return The cell to work on, or {@link #NONE} if there's nothing to choose from and everything should be worked on.
+     * The current cell is kept in that case, since an empty work set usually only means nothing is known to be left
+     * nearby right now, and the builder should carry on from there once there is.
+     */
+    long choose(LongCollection work, BlockPos from) {
+        long now = System.currentTimeMillis();
+        skipped.long2LongEntrySet().removeIf(entry -> entry.getLongValue() <= now);
+        Long2IntOpenHashMap lowest = new Long2IntOpenHashMap();
+        lowest.defaultReturnValue(Integer.MAX_VALUE);
+        LongIterator it = work.iterator();
+        while (it.hasNext()) {
+            long pos = it.nextLong();
+            long cell = cellOf(pos);
+            if (!skipped.containsKey(cell)) {
+                lowest.put(cell, Math.min(lowest.get(cell), BlockPos.getY(pos)));
+            }
+        }
+        if (lowest.isEmpty()) {
+            return NONE;
+        }
+        if (lowest.containsKey(current)) {
+            return current;
+        }
+        int minY = Integer.MAX_VALUE;
+        for (Long2IntMap.Entry entry : lowest.long2IntEntrySet()) {
+            minY = Math.min(minY, entry.getIntValue());
+        }
+        // carry on from where the last cell was, if there was one
+        double fromX = current == NONE ? from.getX() : centerX(current);
+        double fromZ = current == NONE ? from.getZ() : centerZ(current);
+        long best = NONE;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (Long2IntMap.Entry entry : lowest.long2IntEntrySet()) {
+            long cell = entry.getLongKey();
+            double dx = centerX(cell) - fromX;
+            double dz = centerZ(cell) - fromZ;
+            double cost = Math.sqrt(dx * dx + dz * dz) + HEIGHT_PENALTY * (entry.getIntValue() - minY);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = cell;
+            }
+        }
+        current = best;
+        return best;
+    }
+
+    /**
+     * The current cell couldn't be pathed to, move on from it
+     */
+    void failed() {
+        if (current != NONE) {
+            skipped.put(current, System.currentTimeMillis() + SKIP_MS);
+            current = NONE;
+        }
+    }
+
+    void reset() {
+        current = NONE;
+        skipped.clear();
+    }
+
+    static long cellOf(long pos) {
+        return (long) (BlockPos.getX(pos) >> CELL_BITS) << 32 | ((BlockPos.getZ(pos) >> CELL_BITS) & 0xFFFFFFFFL);
+    }
+
+    private static double centerX(long cell) {
+        return ((int) (cell >> 32) << CELL_BITS) + (1 << CELL_BITS) / 2D;
+    }
+
+    private static double centerZ(long cell) {
+        return ((int) cell << CELL_BITS) + (1 << CELL_BITS) / 2D;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.process;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Vec3i;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.BitSet;
+import java.util.PriorityQueue;
+
+/**
+ * Which positions of a schematic being built were incorrect when they were last looked at, as a bitmap per chunk, so
+ * that the builder doesn't have to look at the whole schematic again every time it runs out of incorrect positions.
+ * <p>
+ * A chunk that hasn't been looked at yet has no bitmap. Once it has, its bitmap is kept up to date position by
+ * position as blocks change, and is kept when the chunk goes out of render distance, so whatever was seen to be
+ * correct is remembered until the chunk comes back.
+ * <p>
+ * Bits are indexed by y relative to the origin, then z and x within the chunk.
+ */
+final class BuildProgress {
+
+    final Vec3i origin;
+    private final int widthX;
+    private final int heightY;
+    private final int lengthZ;
+
+    private final Long2ObjectOpenHashMap<BitSet> chunks = new Long2ObjectOpenHashMap<>();
+
+    BuildProgress(Vec3i origin, int widthX, int heightY, int lengthZ) {
+        this.origin = origin;
+        this.widthX = widthX;
+        this.heightY = heightY;
+        this.lengthZ = lengthZ;
+    }
+
+    /**
+     * @return Whether the position, in world coordinates, is within the bounds of the schematic
+     */
+    boolean contains(int x, int y, int z) {
+        return x >= origin.getX() && x < origin.getX() + widthX
+                && y >= origin.getY() && y < origin.getY() + heightY
+                && z >= origin.getZ() && z < origin.getZ() + lengthZ;
+    }
+
+    /**
+     * @return Every chunk the schematic covers
+     */
+    LongList allChunks() {
+        LongArrayList result = new LongArrayList();
+        for (int chunkX = origin.getX() >> 4; chunkX <= (origin.getX() + widthX - 1) >> 4; chunkX++) {
+            for (int chunkZ = origin.getZ() >> 4; chunkZ <= (origin.getZ() + lengthZ - 1) >> 4; chunkZ++) {
+                result.add(ChunkPos.asLong(chunkX, chunkZ));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Every chunk the schematic covers that hasn't been looked at
+     */
+    LongList unexaminedChunks() {
+        LongList result = allChunks();
+        result.removeIf((long chunk) -> chunks.containsKey(chunk));
+        return result;
+    }
+
+    boolean isExamined(long chunk) {
+        return chunks.containsKey(chunk);
+    }
+
+    void put(long chunk, BitSet incorrect) {
+        chunks.put(chunk, incorrect);
+    }
+
+    /**
+     * Forgets what was seen in a chunk, so that it's looked at again
+     */
+    void forget(long chunk) {
+        chunks.remove(chunk);
+    }
+
+    /**
+     * Updates a single position, in world coordinates. Does nothing if its chunk hasn't been looked at yet.
+     */
+    void set(int x, int y, int z, boolean incorrect) {
+        if (!contains(x, y, z)) {
+            return;
+        }
+        BitSet bits = chunks.get(ChunkPos.asLong(x >> 4, z >> 4));
+        if (bits != null) {
+            bits.set(index(x, y, z), incorrect);
+        }
+    }
+
+    int index(int x, int y, int z) {
+        return (y - origin.getY()) << 8 | (z & 15) << 4 | (x & 15);
+    }
+
+    /**
+     * Adds incorrect positions to a collection, lowest first, like a scan of the whole schematic from the bottom up
+     * would.
+     *
+     * @param out   Where to add them, packed with {@link BlockPos#asLong}
+     * @param minY  The lowest y to include, relative to the origin
+     * @param maxY  The highest y to include, relative to the origin
+     * @param limit Stop once the collection is larger than this
+     */
+    void collect(LongCollection out, int minY, int maxY, int limit) {
+        int from = Math.max(0, minY) << 8;
+        int to = (Math.min(heightY - 1, maxY) + 1) << 8;
+        if (from >= to) {
+            return;
+        }
+        // merge the chunks by their next incorrect y, so that only as much is looked at as is taken
+        PriorityQueue<Cursor> queue = new PriorityQueue<>();
+        for (Long2ObjectMap.Entry<BitSet> entry : chunks.long2ObjectEntrySet()) {
+            Cursor cursor = new Cursor(entry.getLongKey(), entry.getValue());
+            if (cursor.seek(from, to)) {
+                queue.add(cursor);
+            }
+        }
+        while (!queue.isEmpty() && out.size() <= limit) {
+            Cursor cursor = queue.poll();
+            int rowEnd = ((cursor.next >> 8) + 1) << 8;
+            int chunkX = ChunkPos.getX(cursor.chunk) << 4;
+            int chunkZ = ChunkPos.getZ(cursor.chunk) << 4;
+            for (int i = cursor.next; i >= 0 && i < rowEnd; i = cursor.bits.nextSetBit(i + 1)) {
+                out.add(BlockPos.asLong(chunkX | (i & 15), origin.getY() + (i >> 8), chunkZ | ((i >> 4) & 15)));
+            }
+            if (cursor.seek(rowEnd, to)) {
+                queue.add(cursor);
+            }
+        }
+    }
+
+    private static final class Cursor implements Comparable<Cursor> {
+
+        private final long chunk;
+        private final BitSet bits;
+        private int next;
+
+        private Cursor(long chunk, BitSet bits) {
+            this.chunk = chunk;
+            this.bits = bits;
+        }
+
+        private boolean seek(int from, int to) {
+            next = bits.nextSetBit(from);
+            return next >= 0 && next < to;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            return Integer.compare(next >> 8, other.next >> 8);
+        }
+    }
+}
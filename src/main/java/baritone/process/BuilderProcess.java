@@ -18,6 +18,10 @@
 package baritone.process;
 
 import baritone.Baritone;
+import baritone.api.event.events.BlockChangeEvent;
+import baritone.api.event.events.ChunkEvent;
+import baritone.api.event.events.WorldEvent;
+import baritone.api.event.listener.AbstractGameEventListener;
 import baritone.api.pathing.goals.Goal;
 import baritone.api.pathing.goals.GoalBlock;
 import baritone.api.pathing.goals.GoalComposite;
@@ -40,12 +44,17 @@ import baritone.utils.BlockStateInterface;
 import baritone.utils.PathingCommandContext;
 import baritone.utils.schematic.MapArtSchematic;
 import baritone.utils.schematic.SelectionSchematic;
+import baritone.utils.schematic.SchematicCache;
+import baritone.utils.schematic.SchematicCompiler;
 import baritone.utils.schematic.SchematicSystem;
 import baritone.utils.schematic.format.defaults.LitematicaSchematic;
 import baritone.utils.schematic.litematica.LitematicaHelper;
 import baritone.utils.schematic.schematica.SchematicaHelper;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongList;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
@@ -57,6 +66,7 @@ import net.minecraft.world.item.BlockItem;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.context.BlockPlaceContext;
 import net.minecraft.world.item.context.UseOnContext;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.block.AirBlock;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.HorizontalDirectionalBlock;
@@ -67,25 +77,41 @@ import net.minecraft.world.level.block.StairBlock;
 import net.minecraft.world.level.block.TrapDoorBlock;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.properties.Property;
-import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.BlockHitResult;
 import net.minecraft.world.phys.HitResult;
 import net.minecraft.world.phys.Vec3;
 import net.minecraft.world.phys.shapes.VoxelShape;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.nio.file.Files;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static baritone.api.pathing.movement.ActionCosts.COST_INF;
 
-public final class BuilderProcess extends BaritoneProcessHelper implements IBuilderProcess {
-
-    private HashSet<BetterBlockPos> incorrectPositions;
-    private LongOpenHashSet observedCompleted; // positions that are completed even if they're out of render distance and we can't make sure right now
+public final class BuilderProcess extends BaritoneProcessHelper implements IBuilderProcess, AbstractGameEventListener {
+
+    private LongOpenHashSet incorrectPositions; // packed with BlockPos.asLong
+    private BuildProgress progress; // what every chunk of the schematic looked like when we last saw it, even if it's out of render distance now
+    private final LongOpenHashSet changedPositions = new LongOpenHashSet(); // since the last tick
+    private final LongOpenHashSet loadedChunks = new LongOpenHashSet(); // since the last tick
+    private boolean recalculating; // whether there's a recalc running in the background
+    private volatile RecalcResult recalcResult;
+    private final LongOpenHashSet changedDuringRecalc = new LongOpenHashSet();
+    private final LongOpenHashSet loadedDuringRecalc = new LongOpenHashSet();
+    private boolean verified; // whether the chunks in render distance were looked at again since we last ran out of incorrect positions
+    private int layerMinY; // the part of the schematic that's currently being built
+    private int layerMaxY;
+    private final BlockStateEquivalence equivalence = new BlockStateEquivalence();
+    private final BuildPlanner planner = new BuildPlanner();
+    private final PlacementFaces faces = new PlacementFaces(); // only touched by the candidate search in progress
+    private final LongOpenHashSet changedFaces = new LongOpenHashSet(); // block changes since the last candidate search started
+    private boolean forgetFaces;
+    private boolean searchingCandidates; // whether there's a candidate search running in the background
+    private volatile CandidateSearch.Result searchResult;
+    private CandidateSearch.Result candidates; // what to break or place around the player, as of last tick
     private String name;
     private ISchematic realSchematic;
     private ISchematic schematic;
@@ -94,17 +120,18 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
     private boolean paused;
     private int layer;
     private int numRepeats;
-    private List<BlockState> approxPlaceable;
+    private volatile List<BlockState> approxPlaceable; // replaced every tick, never modified, and read off-thread
     public int stopAtHeight = 0;
 
     public BuilderProcess(Baritone baritone) {
         super(baritone);
+        baritone.getGameEventHandler().registerEventListener(this);
     }
 
     @Override
     public void build(String name, ISchematic schematic, Vec3i origin) {
         this.name = name;
-        this.schematic = schematic;
+        this.schematic = SchematicCompiler.compile(schematic);
         this.realSchematic = null;
         boolean buildingSelectionSchematic = schematic instanceof SelectionSchematic;
         if (!Baritone.settings().buildSubstitutes.value.isEmpty()) {
@@ -145,8 +172,12 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
         }
 
         this.numRepeats = 0;
-        this.observedCompleted = new LongOpenHashSet();
         this.incorrectPositions = null;
+        this.progress = null;
+        this.equivalence.reset();
+        this.planner.reset();
+        this.candidates = null;
+        this.forgetFaces = true;
     }
 
     public void resume() {
@@ -170,7 +201,7 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
         }
         ISchematic parsed;
         try {
-            parsed = format.get().parse(new FileInputStream(schematic));
+            parsed = SchematicCache.load(format.get(), schematic, baritone.getDirectory().resolve("schematic-cache"));
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -270,30 +301,71 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
         return state;
     }
 
+    /**
+     * Picks up the result of the last candidate search, and starts the next one against this tick's copy of the world
+     */
+    private void pollCandidates(BuilderCalculationContext bcc) {
+        CandidateSearch.Result result = searchResult;
+        if (result != null) {
+            searchResult = null;
+            searchingCandidates = false;
+            candidates = result.progress == progress ? result : null;
+        }
+        if (searchingCandidates) {
+            return;
+        }
+        long[] changed = changedFaces.toLongArray();
+        changedFaces.clear();
+        boolean forget = forgetFaces;
+        forgetFaces = false;
+        CandidateSearch search = new CandidateSearch(ctx, baritone.getPathingBehavior().pathStart(), bcc, progress, equivalence);
+        searchingCandidates = true;
+        Baritone.getExecutor().execute(() -> {
+            CandidateSearch.Result found = CandidateSearch.Result.FAILED;
+            try {
+                if (forget) {
+                    faces.clear();
+                }
+                for (long pos : changed) {
+                    faces.changed(pos);
+                }
+                found = search.run(faces);
+            } finally {
+                searchResult = found;
+            }
+        });
+    }
+
     private Optional<Tuple<BetterBlockPos, Rotation>> toBreakNearPlayer(BuilderCalculationContext bcc) {
+        if (candidates == null) {
+            return Optional.empty();
+        }
         BetterBlockPos center = ctx.playerFeet();
         BetterBlockPos pathStart = baritone.getPathingBehavior().pathStart();
-        for (int dx = -5; dx <= 5; dx++) {
-            for (int dy = Baritone.settings().breakFromAbove.value ? -1 : 0; dy <= 5; dy++) {
-                for (int dz = -5; dz <= 5; dz++) {
-                    int x = center.x + dx;
-                    int y = center.y + dy;
-                    int z = center.z + dz;
-                    if (dy == -1 && x == pathStart.x && z == pathStart.z) {
-                        continue; // dont mine what we're supported by, but not directly standing on
-                    }
-                    BlockState desired = bcc.getSchematic(x, y, z, bcc.bsi.get0(x, y, z));
-                    if (desired == null) {
-                        continue; // irrelevant
-                    }
-                    BlockState curr = bcc.bsi.get0(x, y, z);
-                    if (!(curr.getBlock() instanceof AirBlock) && !(curr.getBlock() == Blocks.WATER || curr.getBlock() == Blocks.LAVA) && !valid(curr, desired, false)) {
-                        BetterBlockPos pos = new BetterBlockPos(x, y, z);
-                        Optional<Rotation> rot = RotationUtils.reachable(ctx, pos, ctx.playerController().getBlockReachDistance());
-                        if (rot.isPresent()) {
-                            return Optional.of(new Tuple<>(pos, rot.get()));
-                        }
-                    }
+        LongIterator it = candidates.toBreak.iterator();
+        while (it.hasNext()) {
+            long packed = it.nextLong();
+            int x = BlockPos.getX(packed);
+            int y = BlockPos.getY(packed);
+            int z = BlockPos.getZ(packed);
+            // this was found around where we were last tick, and in a world that might have changed since
+            int dy = y - center.y;
+            if (Math.abs(x - center.x) > 5 || Math.abs(z - center.z) > 5 || dy < (Baritone.settings().breakFromAbove.value ? -1 : 0) || dy > 5) {
+                continue;
+            }
+            if (dy == -1 && x == pathStart.x && z == pathStart.z) {
+                continue; // dont mine what we're supported by, but not directly standing on
+            }
+            BlockState desired = bcc.getSchematic(x, y, z, bcc.bsi.get0(x, y, z));
+            if (desired == null) {
+                continue; // irrelevant
+            }
+            BlockState curr = bcc.bsi.get0(x, y, z);
+            if (!(curr.getBlock() instanceof AirBlock) && !(curr.getBlock() == Blocks.WATER || curr.getBlock() == Blocks.LAVA) && !valid(curr, desired, false)) {
+                BetterBlockPos pos = new BetterBlockPos(x, y, z);
+                Optional<Rotation> rot = RotationUtils.reachable(ctx, pos, ctx.playerController().getBlockReachDistance());
+                if (rot.isPresent()) {
+                    return Optional.of(new Tuple<>(pos, rot.get()));
                 }
             }
         }
@@ -316,28 +388,29 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
     }
 
     private Optional<Placement> searchForPlacables(BuilderCalculationContext bcc, List<BlockState> desirableOnHotbar) {
+        if (candidates == null) {
+            return Optional.empty();
+        }
+        desirableOnHotbar.addAll(candidates.desirable);
         BetterBlockPos center = ctx.playerFeet();
-        for (int dx = -5; dx <= 5; dx++) {
-            for (int dy = -5; dy <= 1; dy++) {
-                for (int dz = -5; dz <= 5; dz++) {
-                    int x = center.x + dx;
-                    int y = center.y + dy;
-                    int z = center.z + dz;
-                    BlockState desired = bcc.getSchematic(x, y, z, bcc.bsi.get0(x, y, z));
-                    if (desired == null) {
-                        continue; // irrelevant
-                    }
-                    BlockState curr = bcc.bsi.get0(x, y, z);
-                    if (MovementHelper.isReplaceable(x, y, z, curr, bcc.bsi) && !valid(curr, desired, false)) {
-                        if (dy == 1 && bcc.bsi.get0(x, y + 1, z).getBlock() instanceof AirBlock) {
-                            continue;
-                        }
-                        desirableOnHotbar.add(desired);
-                        Optional<Placement> opt = possibleToPlace(desired, x, y, z, bcc.bsi);
-                        if (opt.isPresent()) {
-                            return opt;
-                        }
-                    }
+        for (CandidateSearch.Placeable placeable : candidates.toPlace) {
+            BetterBlockPos pos = placeable.pos;
+            int dy = pos.y - center.y;
+            if (Math.abs(pos.x - center.x) > 5 || Math.abs(pos.z - center.z) > 5 || dy < -5 || dy > 1) {
+                continue;
+            }
+            BlockState desired = bcc.getSchematic(pos.x, pos.y, pos.z, bcc.bsi.get0(pos));
+            if (desired == null) {
+                continue; // irrelevant
+            }
+            BlockState curr = bcc.bsi.get0(pos);
+            if (MovementHelper.isReplaceable(pos.x, pos.y, pos.z, curr, bcc.bsi) && !valid(curr, desired, false)) {
+                if (dy == 1 && bcc.bsi.get0(pos.x, pos.y + 1, pos.z).getBlock() instanceof AirBlock) {
+                    continue;
+                }
+                Optional<Placement> opt = possibleToPlace(desired, pos, placeable.targets);
+                if (opt.isPresent()) {
+                    return opt;
                 }
             }
         }
@@ -349,32 +422,21 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
         return voxelshape.isEmpty() || ctx.world().isUnobstructed(null, voxelshape.move(pos.getX(), pos.getY(), pos.getZ()));
     }
 
-    private Optional<Placement> possibleToPlace(BlockState toPlace, int x, int y, int z, BlockStateInterface bsi) {
-        for (Direction against : Direction.values()) {
-            BetterBlockPos placeAgainstPos = new BetterBlockPos(x, y, z).relative(against);
-            BlockState placeAgainstState = bsi.get0(placeAgainstPos);
-            if (MovementHelper.isReplaceable(placeAgainstPos.x, placeAgainstPos.y, placeAgainstPos.z, placeAgainstState, bsi)) {
-                continue;
-            }
-            if (!toPlace.canSurvive(ctx.world(), new BetterBlockPos(x, y, z))) {
-                continue;
-            }
-            if (!placementPlausible(new BetterBlockPos(x, y, z), toPlace)) {
-                continue;
-            }
-            AABB aabb = placeAgainstState.getShape(ctx.world(), placeAgainstPos).bounds();
-            for (Vec3 placementMultiplier : aabbSideMultipliers(against)) {
-                double placeX = placeAgainstPos.x + aabb.minX * placementMultiplier.x + aabb.maxX * (1 - placementMultiplier.x);
-                double placeY = placeAgainstPos.y + aabb.minY * placementMultiplier.y + aabb.maxY * (1 - placementMultiplier.y);
-                double placeZ = placeAgainstPos.z + aabb.minZ * placementMultiplier.z + aabb.maxZ * (1 - placementMultiplier.z);
-                Rotation rot = RotationUtils.calcRotationFromVec3d(RayTraceUtils.inferSneakingEyePosition(ctx.player()), new Vec3(placeX, placeY, placeZ), ctx.playerRotations());
-                Rotation actualRot = baritone.getLookBehavior().getAimProcessor().peekRotation(rot);
-                HitResult result = RayTraceUtils.rayTraceTowards(ctx.player(), actualRot, ctx.playerController().getBlockReachDistance(), true);
-                if (result != null && result.getType() == HitResult.Type.BLOCK && ((BlockHitResult) result).getBlockPos().equals(placeAgainstPos) && ((BlockHitResult) result).getDirection() == against.getOpposite()) {
-                    OptionalInt hotbar = hasAnyItemThatWouldPlace(toPlace, result, actualRot);
-                    if (hotbar.isPresent()) {
-                        return Optional.of(new Placement(hotbar.getAsInt(), placeAgainstPos, against.getOpposite(), rot));
-                    }
+    private Optional<Placement> possibleToPlace(BlockState toPlace, BetterBlockPos pos, List<PlacementFaces.Target> targets) {
+        if (!toPlace.canSurvive(ctx.world(), pos)) {
+            return Optional.empty();
+        }
+        if (!placementPlausible(pos, toPlace)) {
+            return Optional.empty();
+        }
+        for (PlacementFaces.Target target : targets) {
+            Rotation rot = RotationUtils.calcRotationFromVec3d(RayTraceUtils.inferSneakingEyePosition(ctx.player()), target.point, ctx.playerRotations());
+            Rotation actualRot = baritone.getLookBehavior().getAimProcessor().peekRotation(rot);
+            HitResult result = RayTraceUtils.rayTraceTowards(ctx.player(), actualRot, ctx.playerController().getBlockReachDistance(), true);
+            if (result != null && result.getType() == HitResult.Type.BLOCK && ((BlockHitResult) result).getBlockPos().equals(target.against) && ((BlockHitResult) result).getDirection() == target.side) {
+                OptionalInt hotbar = hasAnyItemThatWouldPlace(toPlace, result, actualRot);
+                if (hotbar.isPresent()) {
+                    return Optional.of(new Placement(hotbar.getAsInt(), target.against, target.side, rot));
                 }
             }
         }
@@ -415,24 +477,6 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
         return OptionalInt.empty();
     }
 
-    private static Vec3[] aabbSideMultipliers(Direction side) {
-        switch (side) {
-            case UP:
-                return new Vec3[]{new Vec3(0.5, 1, 0.5), new Vec3(0.1, 1, 0.5), new Vec3(0.9, 1, 0.5), new Vec3(0.5, 1, 0.1), new Vec3(0.5, 1, 0.9)};
-            case DOWN:
-                return new Vec3[]{new Vec3(0.5, 0, 0.5), new Vec3(0.1, 0, 0.5), new Vec3(0.9, 0, 0.5), new Vec3(0.5, 0, 0.1), new Vec3(0.5, 0, 0.9)};
-            case NORTH:
-            case SOUTH:
-            case EAST:
-            case WEST:
-                double x = side.getStepX() == 0 ? 0.5 : (1 + side.getStepX()) / 2D;
-                double z = side.getStepZ() == 0 ? 0.5 : (1 + side.getStepZ()) / 2D;
-                return new Vec3[]{new Vec3(x, 0.25, z), new Vec3(x, 0.75, z)};
-            default: // null
-                throw new IllegalStateException();
-        }
-    }
-
     @Override
     public PathingCommand onTick(boolean calcFailed, boolean isSafeToCancel) {
         return onTick(calcFailed, isSafeToCancel, 0);
@@ -452,6 +496,8 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
         if (paused) {
             return new PathingCommand(null, PathingCommandType.CANCEL_AND_SET_GOAL);
         }
+        layerMinY = 0;
+        layerMaxY = Integer.MAX_VALUE;
         if (Baritone.settings().buildInLayers.value) {
             if (realSchematic == null) {
                 realSchematic = schematic;
@@ -468,10 +514,12 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
                 maxYInclusive = layer * Baritone.settings().layerHeight.value - 1;
                 minYInclusive = 0;
             }
+            layerMinY = minYInclusive;
+            layerMaxY = maxYInclusive;
             schematic = new ISchematic() {
                 @Override
                 public BlockState desiredState(int x, int y, int z, BlockState current, List<BlockState> approxPlaceable) {
-                    return realSchematic.desiredState(x, y, z, current, BuilderProcess.this.approxPlaceable);
+                    return realSchematic.desiredState(x, y, z, current, approxPlaceable);
                 }
 
                 @Override
@@ -502,6 +550,10 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
         }
         BuilderCalculationContext bcc = new BuilderCalculationContext();
         if (!recalc(bcc)) {
+            if (isRecalculating()) {
+                // nothing we know of to do until the background recalc is done
+                return new PathingCommand(null, PathingCommandType.REQUEST_PAUSE);
+            }
             if (Baritone.settings().buildInLayers.value && layer * Baritone.settings().layerHeight.value < stopAtHeight) {
                 logDirect("Starting layer " + layer);
                 layer++;
@@ -521,6 +573,9 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
             // build repeat time
             layer = 0;
             origin = new BlockPos(origin).offset(repeat);
+            progress = null;
+            planner.reset();
+            candidates = null;
             if (!Baritone.settings().buildRepeatSneaky.value) {
                 schematic.reset();
             }
@@ -531,6 +586,7 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
             trim();
         }
 
+        pollCandidates(bcc);
         Optional<Tuple<BetterBlockPos, Rotation>> toBreak = toBreakNearPlayer(bcc);
         if (toBreak.isPresent() && isSafeToCancel && ctx.player().onGround()) {
             // we'd like to pause to break this block
@@ -591,6 +647,9 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
             }
         }
 
+        if (calcFailed) {
+            planner.failed();
+        }
         Goal goal = assemble(bcc, approxPlaceable.subList(0, 9));
         if (goal == null) {
             goal = assemble(bcc, approxPlaceable, true); // we're far away, so assume that we have our whole inventory to recalculate placeable properly
@@ -609,91 +668,198 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
     }
 
     private boolean recalc(BuilderCalculationContext bcc) {
-        if (incorrectPositions == null) {
-            incorrectPositions = new HashSet<>();
-            fullRecalc(bcc);
-            if (incorrectPositions.isEmpty()) {
-                return false;
+        if (progress == null) {
+            progress = new BuildProgress(origin, schematic.widthX(), schematic.heightY(), schematic.lengthZ());
+            incorrectPositions = new LongOpenHashSet();
+            changedPositions.clear();
+            loadedChunks.clear();
+            verified = false;
+        }
+        applyChanges(bcc);
+        if (!recalculating) {
+            LongList unexamined = progress.unexaminedChunks();
+            if (!unexamined.isEmpty()) {
+                startRecalc(bcc, unexamined);
             }
         }
         recalcNearby(bcc);
-        if (incorrectPositions.isEmpty()) {
-            fullRecalc(bcc);
+        if (incorrectPositions.isEmpty() && !isRecalculating()) {
+            progress.collect(incorrectPositions, layerMinY, layerMaxY, Baritone.settings().incorrectSize.value);
+            if (!incorrectPositions.isEmpty()) {
+                verified = false;
+            } else if (!verified) {
+                // everything seems to be done, but something could have been missed while keeping up with changes
+                // so look at everything we can see once more before believing it
+                verified = true;
+                LongList visible = progress.allChunks();
+                visible.removeIf((long chunk) -> !bcc.bsi.worldContainsLoadedChunk(ChunkPos.getX(chunk) << 4, ChunkPos.getZ(chunk) << 4));
+                visible.forEach((long chunk) -> progress.forget(chunk));
+                if (!visible.isEmpty() && !recalculating) {
+                    startRecalc(bcc, visible);
+                }
+            }
         }
         return !incorrectPositions.isEmpty();
     }
 
+    private boolean isRecalculating() {
+        return recalculating || (progress != null && !progress.unexaminedChunks().isEmpty());
+    }
+
+    /**
+     * Catches up on the blocks that changed and the chunks that came into render distance since the last tick, and
+     * on the result of the background recalc if it's done
+     */
+    private void applyChanges(BuilderCalculationContext bcc) {
+        RecalcResult result = recalcResult;
+        if (result != null) {
+            recalcResult = null;
+            recalculating = false;
+            if (result.progress == progress) {
+                result.examined.long2ObjectEntrySet().fastForEach(entry -> progress.put(entry.getLongKey(), entry.getValue()));
+                // what the recalc saw of these could already be out of date
+                loadedDuringRecalc.forEach((long chunk) -> progress.forget(chunk));
+                changedPositions.addAll(changedDuringRecalc);
+            }
+            loadedDuringRecalc.clear();
+            changedDuringRecalc.clear();
+        }
+        if (!loadedChunks.isEmpty()) {
+            loadedChunks.forEach((long chunk) -> progress.forget(chunk));
+            if (recalculating) {
+                loadedDuringRecalc.addAll(loadedChunks);
+            }
+            loadedChunks.clear();
+        }
+        if (!changedPositions.isEmpty()) {
+            changedPositions.forEach((long pos) -> recalcAt(bcc, BlockPos.getX(pos), BlockPos.getY(pos), BlockPos.getZ(pos)));
+            if (recalculating) {
+                changedDuringRecalc.addAll(changedPositions);
+            }
+            changedPositions.clear();
+        }
+    }
+
+    /**
+     * Looks at chunks of the whole schematic in the background, for when it's first built and as a fallback when
+     * everything seems to be done. The chunks are looked at in parallel, each against its own view of the snapshot of
+     * the world the calculation context took, and the result is picked up by the next tick.
+     */
+    private void startRecalc(BuilderCalculationContext bcc, LongList chunks) {
+        BuildProgress progress = this.progress;
+        ISchematic schematic = realSchematic != null ? realSchematic : this.schematic;
+        long[] toExamine = chunks.toLongArray();
+        recalculating = true;
+        Baritone.getExecutor().execute(() -> {
+            BitSet[] examined = new BitSet[toExamine.length];
+            try {
+                IntStream.range(0, toExamine.length).parallel().forEach(i -> {
+                    BlockStateInterface bsi = new BlockStateInterface(bcc.bsi);
+                    examined[i] = examine(bsi, schematic, progress, ChunkPos.getX(toExamine[i]), ChunkPos.getZ(toExamine[i]));
+                });
+            } finally {
+                // whatever wasn't examined because of an exception is still unexamined, and will be tried again
+                Long2ObjectOpenHashMap<BitSet> result = new Long2ObjectOpenHashMap<>();
+                for (int i = 0; i < toExamine.length; i++) {
+                    if (examined[i] != null) {
+                        result.put(toExamine[i], examined[i]);
+                    }
+                }
+                recalcResult = new RecalcResult(progress, result);
+            }
+        });
+    }
+
+    /**
+     * @return Which positions in a chunk are incorrect, see {@link BuildProgress}
+     */
+    private BitSet examine(BlockStateInterface bsi, ISchematic schematic, BuildProgress progress, int chunkX, int chunkZ) {
+        BitSet incorrect = new BitSet();
+        Vec3i origin = progress.origin;
+        // check if its in render distance, not if its in cache
+        boolean loaded = bsi.worldContainsLoadedChunk(chunkX << 4, chunkZ << 4);
+        int minX = Math.max(chunkX << 4, origin.getX());
+        int maxX = Math.min((chunkX << 4) + 15, origin.getX() + schematic.widthX() - 1);
+        int minZ = Math.max(chunkZ << 4, origin.getZ());
+        int maxZ = Math.min((chunkZ << 4) + 15, origin.getZ() + schematic.lengthZ() - 1);
+        for (int y = 0; y < schematic.heightY(); y++) {
+            for (int blockZ = minZ; blockZ <= maxZ; blockZ++) {
+                for (int blockX = minX; blockX <= maxX; blockX++) {
+                    int blockY = y + origin.getY();
+                    if (isIncorrect(bsi, schematic, origin, blockX, blockY, blockZ, loaded)) {
+                        incorrect.set(progress.index(blockX, blockY, blockZ));
+                    }
+                }
+            }
+        }
+        return incorrect;
+    }
+
+    /**
+     * @param loaded Whether we can directly observe this position, if we can't it's assumed to be incorrect
+     */
+    private boolean isIncorrect(BlockStateInterface bsi, ISchematic schematic, Vec3i origin, int blockX, int blockY, int blockZ, boolean loaded) {
+        int x = blockX - origin.getX();
+        int y = blockY - origin.getY();
+        int z = blockZ - origin.getZ();
+        BlockState current = bsi.get0(blockX, blockY, blockZ);
+        if (!schematic.inSchematic(x, y, z, current)) {
+            return false;
+        }
+        BlockState desired = schematic.desiredState(x, y, z, current, this.approxPlaceable);
+        if (loaded) {
+            return !valid(current, desired, false);
+        }
+        return desired != null && !Baritone.settings().buildSkipBlocks.value.contains(desired.getBlock());
+    }
+
     private void trim() {
-        HashSet<BetterBlockPos> copy = new HashSet<>(incorrectPositions);
-        copy.removeIf(pos -> pos.distSqr(ctx.player().blockPosition()) > 200);
-        if (!copy.isEmpty()) {
-            incorrectPositions = copy;
+        BlockPos center = ctx.player().blockPosition();
+        // only trim if that leaves anything, checked first so that nothing has to be copied
+        LongIterator it = incorrectPositions.iterator();
+        while (it.hasNext()) {
+            if (!isFar(it.nextLong(), center)) {
+                incorrectPositions.removeIf((long pos) -> isFar(pos, center));
+                return;
+            }
         }
     }
 
+    private static boolean isFar(long pos, BlockPos center) {
+        int dx = BlockPos.getX(pos) - center.getX();
+        int dy = BlockPos.getY(pos) - center.getY();
+        int dz = BlockPos.getZ(pos) - center.getZ();
+        return (long) dx * dx + (long) dy * dy + (long) dz * dz > 200;
+    }
+
     private void recalcNearby(BuilderCalculationContext bcc) {
         BetterBlockPos center = ctx.playerFeet();
         int radius = Baritone.settings().builderTickScanRadius.value;
         for (int dx = -radius; dx <= radius; dx++) {
             for (int dy = -radius; dy <= radius; dy++) {
                 for (int dz = -radius; dz <= radius; dz++) {
-                    int x = center.x + dx;
-                    int y = center.y + dy;
-                    int z = center.z + dz;
-                    BlockState desired = bcc.getSchematic(x, y, z, bcc.bsi.get0(x, y, z));
-                    if (desired != null) {
-                        // we care about this position
-                        BetterBlockPos pos = new BetterBlockPos(x, y, z);
-                        if (valid(bcc.bsi.get0(x, y, z), desired, false)) {
-                            incorrectPositions.remove(pos);
-                            observedCompleted.add(BetterBlockPos.longHash(pos));
-                        } else {
-                            incorrectPositions.add(pos);
-                            observedCompleted.remove(BetterBlockPos.longHash(pos));
-                        }
-                    }
+                    recalcAt(bcc, center.x + dx, center.y + dy, center.z + dz);
                 }
             }
         }
     }
 
-    private void fullRecalc(BuilderCalculationContext bcc) {
-        incorrectPositions = new HashSet<>();
-        for (int y = 0; y < schematic.heightY(); y++) {
-            for (int z = 0; z < schematic.lengthZ(); z++) {
-                for (int x = 0; x < schematic.widthX(); x++) {
-                    int blockX = x + origin.getX();
-                    int blockY = y + origin.getY();
-                    int blockZ = z + origin.getZ();
-                    BlockState current = bcc.bsi.get0(blockX, blockY, blockZ);
-                    if (!schematic.inSchematic(x, y, z, current)) {
-                        continue;
-                    }
-                    if (bcc.bsi.worldContainsLoadedChunk(blockX, blockZ)) { // check if its in render distance, not if its in cache
-                        // we can directly observe this block, it is in render distance
-                        if (valid(bcc.bsi.get0(blockX, blockY, blockZ), schematic.desiredState(x, y, z, current, this.approxPlaceable), false)) {
-                            observedCompleted.add(BetterBlockPos.longHash(blockX, blockY, blockZ));
-                        } else {
-                            incorrectPositions.add(new BetterBlockPos(blockX, blockY, blockZ));
-                            observedCompleted.remove(BetterBlockPos.longHash(blockX, blockY, blockZ));
-                            if (incorrectPositions.size() > Baritone.settings().incorrectSize.value) {
-                                return;
-                            }
-                        }
-                        continue;
-                    }
-                    // this is not in render distance
-                    if (!observedCompleted.contains(BetterBlockPos.longHash(blockX, blockY, blockZ))
-                            && !Baritone.settings().buildSkipBlocks.value.contains(schematic.desiredState(x, y, z, current, this.approxPlaceable).getBlock())) {
-                        // and we've never seen this position be correct
-                        // therefore mark as incorrect
-                        incorrectPositions.add(new BetterBlockPos(blockX, blockY, blockZ));
-                        if (incorrectPositions.size() > Baritone.settings().incorrectSize.value) {
-                            return;
-                        }
-                    }
-                }
+    private void recalcAt(BuilderCalculationContext bcc, int x, int y, int z) {
+        BlockState current = bcc.bsi.get0(x, y, z);
+        BlockState desired = bcc.getSchematic(x, y, z, current);
+        if (desired != null) {
+            // we care about this position
+            long pos = BlockPos.asLong(x, y, z);
+            if (valid(current, desired, false)) {
+                incorrectPositions.remove(pos);
+                progress.set(x, y, z, false);
+            } else {
+                incorrectPositions.add(pos);
+                progress.set(x, y, z, true);
             }
+        } else if (realSchematic != null && progress.contains(x, y, z)) {
+            // not in the current layer, but it will be in a later one
+            progress.set(x, y, z, isIncorrect(bcc.bsi, realSchematic, origin, x, y, z, true));
         }
     }
 
@@ -702,18 +868,23 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
     }
 
     private Goal assemble(BuilderCalculationContext bcc, List<BlockState> approxPlaceable, boolean logMissing) {
-        List<BetterBlockPos> placeable = new ArrayList<>();
-        List<BetterBlockPos> breakable = new ArrayList<>();
-        List<BetterBlockPos> sourceLiquids = new ArrayList<>();
-        List<BetterBlockPos> flowingLiquids = new ArrayList<>();
+        LongOpenHashSet placeable = new LongOpenHashSet();
+        LongArrayList breakable = new LongArrayList();
+        LongArrayList sourceLiquids = new LongArrayList();
+        LongArrayList flowingLiquids = new LongArrayList();
         Map<BlockState, Integer> missing = new HashMap<>();
-        incorrectPositions.forEach(pos -> {
-            BlockState state = bcc.bsi.get0(pos);
+        LongIterator it = incorrectPositions.iterator();
+        while (it.hasNext()) {
+            long pos = it.nextLong();
+            int x = BlockPos.getX(pos);
+            int y = BlockPos.getY(pos);
+            int z = BlockPos.getZ(pos);
+            BlockState state = bcc.bsi.get0(x, y, z);
             if (state.getBlock() instanceof AirBlock) {
-                if (containsBlockState(approxPlaceable, bcc.getSchematic(pos.x, pos.y, pos.z, state))) {
+                BlockState desired = bcc.getSchematic(x, y, z, state);
+                if (containsBlockState(approxPlaceable, desired)) {
                     placeable.add(pos);
                 } else {
-                    BlockState desired = bcc.getSchematic(pos.x, pos.y, pos.z, state);
                     missing.put(desired, 1 + missing.getOrDefault(desired, 0));
                 }
             } else {
@@ -730,16 +901,33 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
                     breakable.add(pos);
                 }
             }
+        }
+        LongArrayList work = new LongArrayList(breakable);
+        placeable.forEach((long pos) -> {
+            if (!placeable.contains(BlockPos.offset(pos, 0, -1, 0)) && !placeable.contains(BlockPos.offset(pos, 0, -2, 0))) {
+                work.add(pos);
+            }
         });
+        work.addAll(sourceLiquids);
+        // only hand out the goals in one cell at a time, so that we finish an area before moving on
+        long cell = Baritone.settings().buildInCells.value ? planner.choose(work, ctx.playerFeet()) : BuildPlanner.NONE;
         List<Goal> toBreak = new ArrayList<>();
-        breakable.forEach(pos -> toBreak.add(breakGoal(pos, bcc)));
+        breakable.forEach((long pos) -> {
+            if (cell == BuildPlanner.NONE || BuildPlanner.cellOf(pos) == cell) {
+                toBreak.add(breakGoal(BlockPos.of(pos), bcc));
+            }
+        });
         List<Goal> toPlace = new ArrayList<>();
-        placeable.forEach(pos -> {
-            if (!placeable.contains(pos.below()) && !placeable.contains(pos.below(2))) {
-                toPlace.add(placementGoal(pos, bcc));
+        work.subList(breakable.size(), work.size()).forEach((long pos) -> {
+            if (cell != BuildPlanner.NONE && BuildPlanner.cellOf(pos) != cell) {
+                return;
+            }
+            if (placeable.contains(pos)) {
+                toPlace.add(placementGoal(BlockPos.of(pos), bcc));
+            } else {
+                toPlace.add(new GoalBlock(BlockPos.of(pos).above()));
             }
         });
-        sourceLiquids.forEach(pos -> toPlace.add(new GoalBlock(pos.above())));
 
         if (!toPlace.isEmpty()) {
             return new JankyGoalComposite(new GoalComposite(toPlace.toArray(new Goal[0])), new GoalComposite(toBreak.toArray(new Goal[0])));
@@ -753,8 +941,8 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
             }
             if (logMissing && !flowingLiquids.isEmpty()) {
                 logDirect("Unreplaceable liquids at at least:");
-                logDirect(flowingLiquids.stream()
-                        .map(p -> String.format("%s %s %s", p.x, p.y, p.z))
+                logDirect(flowingLiquids.longStream()
+                        .mapToObj(p -> String.format("%s %s %s", BlockPos.getX(p), BlockPos.getY(p), BlockPos.getZ(p)))
                         .collect(Collectors.joining("\n")));
             }
             return null;
@@ -975,7 +1163,32 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
         layer = Baritone.settings().startAtLayer.value;
         numRepeats = 0;
         paused = false;
-        observedCompleted = null;
+        progress = null;
+        planner.reset();
+        candidates = null;
+    }
+
+    @Override
+    public void onBlockChange(BlockChangeEvent event) {
+        if (progress == null) {
+            return;
+        }
+        for (Pair<BlockPos, BlockState> change : event.getBlocks()) {
+            changedPositions.add(change.first().asLong());
+            changedFaces.add(change.first().asLong());
+        }
+    }
+
+    @Override
+    public void onWorldEvent(WorldEvent event) {
+        forgetFaces = true;
+    }
+
+    @Override
+    public void onChunkEvent(ChunkEvent event) {
+        if (progress != null && event.isPostPopulate()) {
+            loadedChunks.add(ChunkPos.asLong(event.getX(), event.getZ()));
+        }
     }
 
     @Override
@@ -1018,24 +1231,7 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
             );
 
     private boolean sameBlockstate(BlockState first, BlockState second) {
-        if (first.getBlock() != second.getBlock()) {
-            return false;
-        }
-        boolean ignoreDirection = Baritone.settings().buildIgnoreDirection.value;
-        List<String> ignoredProps = Baritone.settings().buildIgnoreProperties.value;
-        if (!ignoreDirection && ignoredProps.isEmpty()) {
-            return first.equals(second); // early return if no properties are being ignored
-        }
-        ImmutableMap<Property<?>, Comparable<?>> map1 = first.getValues();
-        ImmutableMap<Property<?>, Comparable<?>> map2 = second.getValues();
-        for (Property<?> prop : map1.keySet()) {
-            if (map1.get(prop) != map2.get(prop)
-                    && !(ignoreDirection && orientationProps.contains(prop))
-                    && !ignoredProps.contains(prop.getName())) {
-                return false;
-            }
-        }
-        return true;
+        return equivalence.same(first, second);
     }
 
     private boolean containsBlockState(Collection<BlockState> states, BlockState state) {
@@ -1048,36 +1244,28 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
     }
 
     private boolean valid(BlockState current, BlockState desired, boolean itemVerify) {
-        if (desired == null) {
-            return true;
-        }
-        if (current.getBlock() instanceof LiquidBlock && Baritone.settings().okIfWater.value) {
-            return true;
-        }
-        if (current.getBlock() instanceof AirBlock && desired.getBlock() instanceof AirBlock) {
-            return true;
-        }
-        if (current.getBlock() instanceof AirBlock && Baritone.settings().okIfAir.value.contains(desired.getBlock())) {
-            return true;
-        }
-        if (desired.getBlock() instanceof AirBlock && Baritone.settings().buildIgnoreBlocks.value.contains(current.getBlock())) {
-            return true;
-        }
-        if (Baritone.settings().buildSkipBlocks.value.contains(desired.getBlock()) && !itemVerify) {
-            return true;
-        }
-        if (Baritone.settings().buildValidSubstitutes.value.getOrDefault(desired.getBlock(), Collections.emptyList()).contains(current.getBlock()) && !itemVerify) {
-            return true;
-        }
-        if (current.equals(desired)) {
-            return true;
+        return equivalence.valid(current, desired, itemVerify);
+    }
+
+    private static final class RecalcResult {
+
+        private final BuildProgress progress;
+        private final Long2ObjectOpenHashMap<BitSet> examined;
+
+        private RecalcResult(BuildProgress progress, Long2ObjectOpenHashMap<BitSet> examined) {
+            this.progress = progress;
+            this.examined = examined;
         }
-        return sameBlockstate(current, desired);
     }
 
     public class BuilderCalculationContext extends CalculationContext {
 
         private final List<BlockState> placeable;
+        /**
+         * What the schematic is asked for desired states with, fixed when this is created so that a search running on
+         * another thread sees the same inventory throughout
+         */
+        private final List<BlockState> desiredPlaceable;
         private final ISchematic schematic;
         private final int originX;
         private final int originY;
@@ -1086,6 +1274,7 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
         public BuilderCalculationContext() {
             super(BuilderProcess.this.baritone, true); // wew lad
             this.placeable = approxPlaceable(9);
+            this.desiredPlaceable = BuilderProcess.this.approxPlaceable;
             this.schematic = BuilderProcess.this.schematic;
             this.originX = origin.getX();
             this.originY = origin.getY();
@@ -1095,9 +1284,9 @@ public final class BuilderProcess extends BaritoneProcessHelper implements IBuil
             this.backtrackCostFavoringCoefficient = 1;
         }
 
-        private BlockState getSchematic(int x, int y, int z, BlockState current) {
+        BlockState getSchematic(int x, int y, int z, BlockState current) {
             if (schematic.inSchematic(x - originX, y - originY, z - originZ, current)) {
-                return schematic.desiredState(x - originX, y - originY, z - originZ, current, BuilderProcess.this.approxPlaceable);
+                return schematic.desiredState(x - originX, y - originY, z - originZ, current, desiredPlaceable);
             } else {
                 return null;
             }
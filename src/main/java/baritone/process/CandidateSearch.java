@@ -0,0 +1,210 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.process;
+
+import baritone.Baritone;
+import baritone.api.utils.BetterBlockPos;
+import baritone.api.utils.IPlayerContext;
+import baritone.api.utils.RayTraceUtils;
+import baritone.pathing.movement.MovementHelper;
+import baritone.process.BuilderProcess.BuilderCalculationContext;
+import baritone.utils.BlockStateInterface;
+import baritone.utils.VisibilityScanner;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongLists;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.ClipContext;
+import net.minecraft.world.level.block.AirBlock;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.BlockHitResult;
+import net.minecraft.world.phys.HitResult;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Looks for blocks around the player that the builder could break or place right away, against a copy of the world,
+ * so that it can run on another thread. Everything that depends on what's in the player's inventory or on entities is
+ * left to the game thread, which then only has to check that the first of these still works, instead of raytracing
+ * everything around the player every tick.
+ * <p>
+ * The schematic is evaluated here too, which relies on it being safe to call from several threads, see
+ * {@link baritone.api.schematic.ISchematic}.
+ */
+final class CandidateSearch {
+
+    private final BuilderCalculationContext bcc;
+    private final BuildProgress progress;
+    private final BlockStateEquivalence equivalence;
+    private final Entity player;
+    private final BetterBlockPos center;
+    private final BetterBlockPos pathStart;
+    private final Vec3 eyes;
+    private final Vec3 sneakingEyes;
+    private final double reach;
+    private final boolean breakFromAbove;
+
+    /**
+     * Must be called from the game thread
+     */
+    CandidateSearch(IPlayerContext ctx, BetterBlockPos pathStart, BuilderCalculationContext bcc, BuildProgress progress, BlockStateEquivalence equivalence) {
+        this.bcc = bcc;
+        this.progress = progress;
+        this.equivalence = equivalence;
+        this.player = ctx.player();
+        this.center = ctx.playerFeet();
+        this.pathStart = pathStart;
+        this.eyes = player.getEyePosition(1.0F);
+        this.sneakingEyes = RayTraceUtils.inferSneakingEyePosition(player);
+        this.reach = ctx.playerController().getBlockReachDistance();
+        this.breakFromAbove = Baritone.settings().breakFromAbove.value;
+    }
+
+    /**
+     * @param faces Only ever used by one search at a time
+     */
+    Result run(PlacementFaces faces) {
+        BlockStateInterface bsi = new BlockStateInterface(bcc.bsi);
+        LongList toBreak = new LongArrayList();
+        for (int dx = -5; dx <= 5; dx++) {
+            for (int dy = breakFromAbove ? -1 : 0; dy <= 5; dy++) {
+                for (int dz = -5; dz <= 5; dz++) {
+                    int x = center.x + dx;
+                    int y = center.y + dy;
+                    int z = center.z + dz;
+                    if (dy == -1 && x == pathStart.x && z == pathStart.z) {
+                        continue; // dont mine what we're supported by, but not directly standing on
+                    }
+                    BlockState curr = bsi.get0(x, y, z);
+                    BlockState desired = bcc.getSchematic(x, y, z, curr);
+                    if (desired == null) {
+                        continue; // irrelevant
+                    }
+                    if (!(curr.getBlock() instanceof AirBlock) && !(curr.getBlock() == Blocks.WATER || curr.getBlock() == Blocks.LAVA) && !equivalence.valid(curr, desired, false)) {
+                        BlockPos pos = new BlockPos(x, y, z);
+                        if (VisibilityScanner.isVisible(bsi, player, eyes, pos, reach)) {
+                            toBreak.add(pos.asLong());
+                        }
+                    }
+                }
+            }
+        }
+        List<Placeable> toPlace = new ArrayList<>();
+        List<BlockState> desirable = new ArrayList<>();
+        for (int dx = -5; dx <= 5; dx++) {
+            for (int dy = -5; dy <= 1; dy++) {
+                for (int dz = -5; dz <= 5; dz++) {
+                    int x = center.x + dx;
+                    int y = center.y + dy;
+                    int z = center.z + dz;
+                    BlockState curr = bsi.get0(x, y, z);
+                    BlockState desired = bcc.getSchematic(x, y, z, curr);
+                    if (desired == null) {
+                        continue; // irrelevant
+                    }
+                    if (MovementHelper.isReplaceable(x, y, z, curr, bsi) && !equivalence.valid(curr, desired, false)) {
+                        if (dy == 1 && bsi.get0(x, y + 1, z).getBlock() instanceof AirBlock) {
+                            continue;
+                        }
+                        desirable.add(desired);
+                        List<PlacementFaces.Target> targets = new ArrayList<>();
+                        for (PlacementFaces.Target target : faces.get(bsi, x, y, z)) {
+                            if (canClick(bsi, target)) {
+                                targets.add(target);
+                            }
+                        }
+                        if (!targets.isEmpty()) {
+                            toPlace.add(new Placeable(new BetterBlockPos(x, y, z), targets));
+                        }
+                    }
+                }
+            }
+        }
+        faces.retainTouched();
+        return new Result(progress, toBreak, toPlace, desirable);
+    }
+
+    /**
+     * Whether aiming at the target while sneaking would hit the right side of the right block, ignoring how the look
+     * behavior might nudge the rotation
+     */
+    private boolean canClick(BlockStateInterface bsi, PlacementFaces.Target target) {
+        Vec3 direction = target.point.subtract(sneakingEyes).normalize();
+        Vec3 end = sneakingEyes.add(direction.scale(reach));
+        HitResult result = bsi.access.clip(new ClipContext(sneakingEyes, end, ClipContext.Block.OUTLINE, ClipContext.Fluid.NONE, player));
+        return result != null && result.getType() == HitResult.Type.BLOCK
+                && ((BlockHitResult) result).getBlockPos().equals(target.against)
+                && ((BlockHitResult) result).getDirection() == target.side;
+    }
+
+    static final class Result {
+
+        /**
+         * Stands in for a search that threw, so that the builder knows it's over
+         */
+        static final Result FAILED = new Result(null, LongLists.EMPTY_LIST, Collections.emptyList(), Collections.emptyList());
+
+        /**
+         * The build this was found for, so that a result that comes in after the build changed is thrown away
+         */
+        final BuildProgress progress;
+
+        /**
+         * Incorrect blocks that looked like they could be reached, packed with {@link BlockPos#asLong}
+         */
+        final LongList toBreak;
+
+        /**
+         * Positions that looked like a block could be placed at them
+         */
+        final List<Placeable> toPlace;
+
+        /**
+         * What should be placed around the player, whether or not it could be placed right now
+         */
+        final List<BlockState> desirable;
+
+        private Result(BuildProgress progress, LongList toBreak, List<Placeable> toPlace, List<BlockState> desirable) {
+            this.progress = progress;
+            this.toBreak = toBreak;
+            this.toPlace = toPlace;
+            this.desirable = desirable;
+        }
+    }
+
+    static final class Placeable {
+
+        final BetterBlockPos pos;
+
+        /**
+         * The targets of {@link PlacementFaces} that could be clicked on
+         */
+        final List<PlacementFaces.Target> targets;
+
+        private Placeable(BetterBlockPos pos, List<PlacementFaces.Target> targets) {
+            this.pos = pos;
+            this.targets = targets;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import baritone.api.process.IFarmProcess;
 import baritone.api.process.PathingCommand;
 import baritone.api.process.PathingCommandType;
 import baritone.api.utils.BetterBlockPos;
+import baritone.api.utils.BlockOptionalMetaLookup;
 import baritone.api.utils.RayTraceUtils;
 import baritone.api.utils.Rotation;
 import baritone.api.utils.RotationUtils;
@@ -35,7 +36,6 @@ import baritone.pathing.movement.MovementHelper;
 import baritone.utils.BaritoneProcessHelper;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
-import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.item.ItemEntity;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
@@ -68,9 +68,20 @@ public final class FarmProcess extends BaritoneProcessHelper implements IFarmPro
     private List<BlockPos> locations;
     private int tickCount;
 
+    /**
+     * The blocks being looked for, and the filter for them that's tracked by the target index
+     */
+    private List<Block> scanning;
+    private BlockOptionalMetaLookup filter;
+
     private int range;
     private BlockPos center;
 
+    /**
+     * How far around the player, in chunks, crops are looked for
+     */
+    private static final int SCAN_RADIUS = 10;
+
     private static final List<Item> FARMLAND_PLANTABLE = Arrays.asList(
             Items.BEETROOT_SEEDS,
             Items.MELON_SEEDS,
@@ -203,8 +214,34 @@ public final class FarmProcess extends BaritoneProcessHelper implements IFarmPro
             }
         }
 
+        if (!scan.equals(scanning)) {
+            // the settings changed, or we just started
+            if (filter != null) {
+                baritone.getTargetIndex().untrack(filter);
+            }
+            scanning = scan;
+            filter = new BlockOptionalMetaLookup(scan);
+            baritone.getTargetIndex().track(filter, SCAN_RADIUS);
+        }
+
         if (Baritone.settings().mineGoalUpdateInterval.value != 0 && tickCount++ % Baritone.settings().mineGoalUpdateInterval.value == 0) {
-            Baritone.getExecutor().execute(() -> locations = BaritoneAPI.getProvider().getWorldScanner().scanChunkRadius(ctx, scan, 256, 10, 10));
+            BlockOptionalMetaLookup filter = this.filter;
+            BetterBlockPos feet = ctx.playerFeet();
+            Baritone.getExecutor().execute(() -> {
+                List<BlockPos> nearest = baritone.getTargetIndex().getNearest(filter, 256, feet);
+                if (nearest == null) {
+                    locations = BaritoneAPI.getProvider().getWorldScanner().scanNearest(ctx, filter, 256, SCAN_RADIUS);
+                    return;
+                }
+                // the index covers every loaded chunk, but only the ones the scan would have looked at are wanted
+                List<BlockPos> inRange = new ArrayList<>(nearest.size());
+                for (BlockPos pos : nearest) {
+                    if (Math.max(Math.abs((pos.getX() >> 4) - (feet.x >> 4)), Math.abs((pos.getZ() >> 4) - (feet.z >> 4))) < SCAN_RADIUS) {
+                        inRange.add(pos);
+                    }
+                }
+                locations = inRange;
+            });
         }
         if (locations == null) {
             return new PathingCommand(null, PathingCommandType.REQUEST_PAUSE);
@@ -350,13 +387,13 @@ public final class FarmProcess extends BaritoneProcessHelper implements IFarmPro
                 goalz.add(new GoalBlock(pos));
             }
         }
-        for (Entity entity : ctx.entities()) {
-            if (entity instanceof ItemEntity && entity.onGround()) {
-                ItemEntity ei = (ItemEntity) entity;
-                if (PICKUP_DROPPED.contains(ei.getItem().getItem())) {
-                    // +0.1 because of farmland's 0.9375 dummy height lol
-                    goalz.add(new GoalBlock(new BetterBlockPos(entity.position().x, entity.position().y + 0.1, entity.position().z)));
-                }
+        List<ItemEntity> drops = range == 0
+                ? baritone.getDroppedItemIndex().getDrops(PICKUP_DROPPED::contains)
+                : baritone.getDroppedItemIndex().getDrops(PICKUP_DROPPED::contains, center, range);
+        for (ItemEntity entity : drops) {
+            if (entity.onGround()) {
+                // +0.1 because of farmland's 0.9375 dummy height lol
+                goalz.add(new GoalBlock(new BetterBlockPos(entity.position().x, entity.position().y + 0.1, entity.position().z)));
             }
         }
         return new PathingCommand(new GoalComposite(goalz.toArray(new Goal[0])), PathingCommandType.SET_GOAL_AND_PATH);
@@ -365,6 +402,11 @@ public final class FarmProcess extends BaritoneProcessHelper implements IFarmPro
     @Override
     public void onLostControl() {
         active = false;
+        if (filter != null) {
+            baritone.getTargetIndex().untrack(filter);
+            filter = null;
+            scanning = null;
+        }
     }
 
     @Override
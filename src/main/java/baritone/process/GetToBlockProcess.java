@@ -41,6 +41,7 @@ import java.util.*;
 public final class GetToBlockProcess extends BaritoneProcessHelper implements IGetToBlockProcess {
 
     private BlockOptionalMeta gettingTo;
+    private BlockOptionalMetaLookup filter;
     private List<BlockPos> knownLocations;
     private List<BlockPos> blacklist; // locations we failed to calc to
     private BlockPos start;
@@ -56,6 +57,8 @@ public final class GetToBlockProcess extends BaritoneProcessHelper implements IG
     public void getToBlock(BlockOptionalMeta block) {
         onLostControl();
         gettingTo = block;
+        filter = new BlockOptionalMetaLookup(block);
+        baritone.getTargetIndex().track(filter, MineProcess.LOADED_SEARCH_RADIUS);
         start = ctx.playerFeet();
         blacklist = new ArrayList<>();
         arrivalTickCount = 0;
@@ -178,7 +181,11 @@ public final class GetToBlockProcess extends BaritoneProcessHelper implements IG
 
     @Override
     public synchronized void onLostControl() {
+        if (filter != null) {
+            baritone.getTargetIndex().untrack(filter);
+        }
         gettingTo = null;
+        filter = null;
         knownLocations = null;
         start = null;
         blacklist = null;
@@ -194,7 +201,11 @@ public final class GetToBlockProcess extends BaritoneProcessHelper implements IG
     }
 
     private synchronized void rescan(List<BlockPos> known, CalculationContext context) {
-        List<BlockPos> positions = MineProcess.searchWorld(context, new BlockOptionalMetaLookup(gettingTo), 64, known, blacklist, Collections.emptyList());
+        if (filter == null) {
+            // canceled while this was waiting to run
+            return;
+        }
+        List<BlockPos> positions = MineProcess.searchWorld(context, filter, 64, known, blacklist, Collections.emptyList());
         positions.removeIf(blacklist::contains);
         knownLocations = positions;
     }
@@ -25,14 +25,17 @@ import baritone.api.process.PathingCommand;
 import baritone.api.process.PathingCommandType;
 import baritone.api.utils.*;
 import baritone.api.utils.input.Input;
+import baritone.api.utils.interfaces.IGoalRenderPos;
 import baritone.cache.CachedChunk;
 import baritone.pathing.movement.CalculationContext;
 import baritone.pathing.movement.MovementHelper;
 import baritone.utils.BaritoneProcessHelper;
 import baritone.utils.BlockStateInterface;
-import net.minecraft.client.multiplayer.ClientLevel;
+import baritone.utils.VisibilityScanner;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongHeapPriorityQueue;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.core.BlockPos;
-import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.item.ItemEntity;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.block.AirBlock;
@@ -42,7 +45,6 @@ import net.minecraft.world.level.block.FallingBlock;
 import net.minecraft.world.level.block.state.BlockState;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 import static baritone.api.pathing.movement.ActionCosts.COST_INF;
 
@@ -55,6 +57,17 @@ public final class MineProcess extends BaritoneProcessHelper implements IMinePro
 
     private static final int ORE_LOCATIONS_COUNT = 64;
 
+    /**
+     * How many regions away from the player's region ores are looked for in the cache, on each axis. One means the
+     * directly and diagonally adjacent regions.
+     */
+    private static final int CACHED_REGION_DISTANCE = 1;
+
+    /**
+     * How far around the player, in chunks, ores are looked for in the loaded chunks
+     */
+    static final int LOADED_SEARCH_RADIUS = 32;
+
     private BlockOptionalMetaLookup filter;
     private List<BlockPos> knownOreLocations;
     private List<BlockPos> blacklist; // inaccessible
@@ -63,9 +76,11 @@ public final class MineProcess extends BaritoneProcessHelper implements IMinePro
     private GoalRunAway branchPointRunaway;
     private int desiredQuantity;
     private int tickCount;
+    private final VisibilityScanner visibilityScanner;
 
     public MineProcess(Baritone baritone) {
         super(baritone);
+        this.visibilityScanner = new VisibilityScanner(baritone);
     }
 
     @Override
@@ -188,7 +203,7 @@ public final class MineProcess extends BaritoneProcessHelper implements IMinePro
             CalculationContext context = new CalculationContext(baritone);
             List<BlockPos> locs2 = prune(context, new ArrayList<>(locs), filter, ORE_LOCATIONS_COUNT, blacklist, droppedItemsScan());
             // can't reassign locs, gotta make a new var locs2, because we use it in a lambda right here, and variables you use in a lambda must be effectively final
-            Goal goal = new GoalComposite(locs2.stream().map(loc -> coalesce(loc, locs2, context)).toArray(Goal[]::new));
+            Goal goal = new GoalComposite(veins(locs2, context));
             knownOreLocations = locs2;
             return new PathingCommand(goal, legit ? PathingCommandType.FORCE_REVALIDATE_GOAL_AND_PATH : PathingCommandType.REVALIDATE_GOAL_AND_PATH);
         }
@@ -248,6 +263,42 @@ public final class MineProcess extends BaritoneProcessHelper implements IMinePro
         knownOreLocations = locs;
     }
 
+    /**
+     * Groups the locations into veins of ores touching each other, diagonally included, with a single goal for each
+     * vein. Veins are in order of their closest ore, and the ores within a vein are in the order they connect from it.
+     */
+    private Goal[] veins(List<BlockPos> locs, CalculationContext context) {
+        LongOpenHashSet remaining = new LongOpenHashSet(locs.size());
+        for (BlockPos loc : locs) {
+            remaining.add(loc.asLong());
+        }
+        List<Goal> veins = new ArrayList<>();
+        for (BlockPos start : locs) {
+            if (!remaining.remove(start.asLong())) {
+                continue; // already part of a vein
+            }
+            List<Goal> members = new ArrayList<>();
+            Deque<BlockPos> queue = new ArrayDeque<>();
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                BlockPos pos = queue.poll();
+                members.add(coalesce(pos, locs, context));
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dz = -1; dz <= 1; dz++) {
+                            long neighbor = BlockPos.asLong(pos.getX() + dx, pos.getY() + dy, pos.getZ() + dz);
+                            if (remaining.remove(neighbor)) {
+                                queue.add(BlockPos.of(neighbor));
+                            }
+                        }
+                    }
+                }
+            }
+            veins.add(members.size() == 1 ? members.get(0) : new GoalVein(members.toArray(new Goal[0])));
+        }
+        return veins.toArray(new Goal[0]);
+    }
+
     private boolean internalMiningGoal(BlockPos pos, CalculationContext context, List<BlockPos> locs) {
         // Here, BlockStateInterface is used because the position may be in a cached chunk (the targeted block is one that is kept track of)
         if (locs.contains(pos)) {
@@ -342,18 +393,84 @@ public final class MineProcess extends BaritoneProcessHelper implements IMinePro
         }
     }
 
+    /**
+     * The goals of all the ores in one vein. Whether a position is in the goal is a single hash lookup, and the
+     * heuristic is to the bounding box of the vein, so neither gets more expensive as the vein gets bigger.
+     */
+    private static class GoalVein extends GoalComposite {
+
+        /**
+         * Every position that is in one of the goals
+         */
+        private final LongOpenHashSet positions = new LongOpenHashSet();
+
+        private final int minX, minY, minZ;
+        private final int maxX, maxY, maxZ;
+
+        private final double heuristic;
+
+        public GoalVein(Goal... goals) {
+            super(goals);
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+            for (Goal goal : goals) {
+                // the goals coalesce produces cover the goal position and up to two blocks below it
+                BlockPos pos = ((IGoalRenderPos) goal).getGoalPos();
+                for (int y = pos.getY() - 2; y <= pos.getY(); y++) {
+                    if (goal.isInGoal(pos.getX(), y, pos.getZ())) {
+                        positions.add(BlockPos.asLong(pos.getX(), y, pos.getZ()));
+                        minX = Math.min(minX, pos.getX());
+                        minY = Math.min(minY, y);
+                        minZ = Math.min(minZ, pos.getZ());
+                        maxX = Math.max(maxX, pos.getX());
+                        maxY = Math.max(maxY, y);
+                        maxZ = Math.max(maxZ, pos.getZ());
+                    }
+                }
+            }
+            this.minX = minX;
+            this.minY = minY;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.maxZ = maxZ;
+            this.heuristic = super.heuristic();
+        }
+
+        @Override
+        public boolean isInGoal(int x, int y, int z) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ
+                    && positions.contains(BlockPos.asLong(x, y, z));
+        }
+
+        @Override
+        public double heuristic(int x, int y, int z) {
+            // never more than the heuristic to the closest ore, so this is still admissible
+            int xDiff = x < minX ? x - minX : x > maxX ? x - maxX : 0;
+            int yDiff = y < minY ? y - minY : y > maxY ? y - maxY : 0;
+            int zDiff = z < minZ ? z - minZ : z > maxZ ? z - maxZ : 0;
+            return GoalBlock.calculate(xDiff, yDiff, zDiff);
+        }
+
+        @Override
+        public double heuristic() {
+            return heuristic;
+        }
+
+        @Override
+        public String toString() {
+            return "GoalVein" + Arrays.toString(goals());
+        }
+    }
+
     public List<BlockPos> droppedItemsScan() {
         if (!Baritone.settings().mineScanDroppedItems.value) {
             return Collections.emptyList();
         }
         List<BlockPos> ret = new ArrayList<>();
-        for (Entity entity : ((ClientLevel) ctx.world()).entitiesForRendering()) {
-            if (entity instanceof ItemEntity) {
-                ItemEntity ei = (ItemEntity) entity;
-                if (filter.has(ei.getItem())) {
-                    ret.add(entity.blockPosition());
-                }
-            }
+        // the filter only looks at the item type of a stack
+        for (ItemEntity ei : baritone.getDroppedItemIndex().getDrops(item -> filter.has(new ItemStack(item)))) {
+            ret.add(ei.blockPosition());
         }
         ret.addAll(anticipatedDrops.keySet());
         return ret;
@@ -362,18 +479,19 @@ public final class MineProcess extends BaritoneProcessHelper implements IMinePro
     public static List<BlockPos> searchWorld(CalculationContext ctx, BlockOptionalMetaLookup filter, int max, List<BlockPos> alreadyKnown, List<BlockPos> blacklist, List<BlockPos> dropped) {
         List<BlockPos> locs = new ArrayList<>();
         List<Block> untracked = new ArrayList<>();
+        BetterBlockPos pf = ctx.baritone.getPlayerContext().playerFeet();
         for (BlockOptionalMeta bom : filter.blocks()) {
             Block block = bom.getBlock();
             if (CachedChunk.BLOCKS_TO_KEEP_TRACK_OF.contains(block)) {
-                BetterBlockPos pf = ctx.baritone.getPlayerContext().playerFeet();
-
-                // maxRegionDistanceSq 2 means adjacent directly or adjacent diagonally; nothing further than that
-                locs.addAll(ctx.worldData.getCachedWorld().getLocationsOf(
-                        BlockUtils.blockToString(block),
-                        Baritone.settings().maxCachedWorldScanCount.value,
-                        pf.x,
-                        pf.z,
-                        2
+                // the same y range that prune keeps, in the player's region and the directly or diagonally adjacent ones
+                locs.addAll(ctx.worldData.cache.getNearestLocationsOf(
+                        block,
+                        Math.max(max, Baritone.settings().maxCachedWorldScanCount.value),
+                        pf,
+                        CACHED_REGION_DISTANCE,
+                        Baritone.settings().minYLevelWhileMining.value + ctx.world.dimensionType().minY(),
+                        Baritone.settings().maxYLevelWhileMining.value,
+                        Long.MAX_VALUE
                 ));
             } else {
                 untracked.add(block);
@@ -383,13 +501,17 @@ public final class MineProcess extends BaritoneProcessHelper implements IMinePro
         locs = prune(ctx, locs, filter, max, blacklist, dropped);
 
         if (!untracked.isEmpty() || (Baritone.settings().extendCacheOnThreshold.value && locs.size() < max)) {
-            locs.addAll(BaritoneAPI.getProvider().getWorldScanner().scanChunkRadius(
-                    ctx.getBaritone().getPlayerContext(),
-                    filter,
-                    max,
-                    10,
-                    32
-            )); // maxSearchRadius is NOT sq
+            // if the filter is indexed, the loaded chunks don't have to be scanned again
+            List<BlockPos> loaded = ((Baritone) ctx.baritone).getTargetIndex().getNearest(filter, max, pf);
+            if (loaded == null) {
+                loaded = BaritoneAPI.getProvider().getWorldScanner().scanNearest(
+                        ctx.getBaritone().getPlayerContext(),
+                        filter,
+                        max,
+                        LOADED_SEARCH_RADIUS
+                ); // maxSearchRadius is NOT sq
+            }
+            locs.addAll(loaded);
         }
 
         locs.addAll(alreadyKnown);
@@ -400,8 +522,6 @@ public final class MineProcess extends BaritoneProcessHelper implements IMinePro
     private boolean addNearby() {
         List<BlockPos> dropped = droppedItemsScan();
         knownOreLocations.addAll(dropped);
-        BlockPos playerFeet = ctx.playerFeet();
-        BlockStateInterface bsi = new BlockStateInterface(ctx);
 
 
         BlockOptionalMetaLookup filter = filterFilter();
@@ -409,22 +529,9 @@ public final class MineProcess extends BaritoneProcessHelper implements IMinePro
             return false;
         }
 
-        int searchDist = 10;
-        double fakedBlockReachDistance = 20; // at least 10 * sqrt(3) with some extra space to account for positioning within the block
-        for (int x = playerFeet.getX() - searchDist; x <= playerFeet.getX() + searchDist; x++) {
-            for (int y = playerFeet.getY() - searchDist; y <= playerFeet.getY() + searchDist; y++) {
-                for (int z = playerFeet.getZ() - searchDist; z <= playerFeet.getZ() + searchDist; z++) {
-                    // crucial to only add blocks we can see because otherwise this
-                    // is an x-ray and it'll get caught
-                    if (filter.has(bsi.get0(x, y, z))) {
-                        BlockPos pos = new BlockPos(x, y, z);
-                        if ((Baritone.settings().legitMineIncludeDiagonals.value && knownOreLocations.stream().anyMatch(ore -> ore.distSqr(pos) <= 2 /* sq means this is pytha dist <= sqrt(2) */)) || RotationUtils.reachable(ctx, pos, fakedBlockReachDistance).isPresent()) {
-                            knownOreLocations.add(pos);
-                        }
-                    }
-                }
-            }
-        }
+        // the raytracing to only add blocks we can see is done on another thread, pick up what it found so far
+        knownOreLocations.addAll(visibilityScanner.poll());
+        visibilityScanner.request(filter, knownOreLocations);
         knownOreLocations = prune(new CalculationContext(baritone), knownOreLocations, filter, ORE_LOCATIONS_COUNT, blacklist, dropped);
         return true;
     }
@@ -438,46 +545,81 @@ public final class MineProcess extends BaritoneProcessHelper implements IMinePro
             }
             return false;
         });
-        List<BlockPos> locs = locs2
-                .stream()
-                .distinct()
-
-                // remove any that are within loaded chunks that aren't actually what we want
-                .filter(pos -> !ctx.bsi.worldContainsLoadedChunk(pos.getX(), pos.getZ()) || filter.has(ctx.get(pos.getX(), pos.getY(), pos.getZ())) || dropped.contains(pos))
-
-                // remove any that are implausible to mine (encased in bedrock, or touching lava)
-                .filter(pos -> MineProcess.plausibleToBreak(ctx, pos))
-
-                .filter(pos -> {
-                    if (Baritone.settings().allowOnlyExposedOres.value) {
-                        return isNextToAir(ctx, pos);
-                    } else {
-                        return true;
-                    }
-                })
-
-                .filter(pos -> pos.getY() >= Baritone.settings().minYLevelWhileMining.value + ctx.world.dimensionType().minY())
-
-                .filter(pos -> pos.getY() <= Baritone.settings().maxYLevelWhileMining.value)
-
-                .filter(pos -> !blacklist.contains(pos))
-
-                .sorted(Comparator.comparingDouble(ctx.getBaritone().getPlayerContext().player().blockPosition()::distSqr))
-                .collect(Collectors.toList());
-
-        if (locs.size() > max) {
-            return locs.subList(0, max);
+        LongOpenHashSet blacklisted = toLongSet(blacklist);
+        LongOpenHashSet droppedAt = toLongSet(dropped);
+        int minY = Baritone.settings().minYLevelWhileMining.value + ctx.world.dimensionType().minY();
+        int maxY = Baritone.settings().maxYLevelWhileMining.value;
+        BlockPos player = ctx.getBaritone().getPlayerContext().player().blockPosition();
+
+        // only the checks that don't need to look at the world are done on every candidate
+        // the rest are done closest first, and only until we have enough
+        LongOpenHashSet seen = new LongOpenHashSet(locs2.size());
+        long[] candidates = new long[locs2.size()];
+        int size = 0;
+        for (int i = 0; i < locs2.size(); i++) {
+            BlockPos pos = locs2.get(i);
+            long packed = pos.asLong();
+            if (pos.getY() < minY || pos.getY() > maxY || blacklisted.contains(packed) || !seen.add(packed)) {
+                continue;
+            }
+            long dx = pos.getX() - player.getX();
+            long dy = pos.getY() - player.getY();
+            long dz = pos.getZ() - player.getZ();
+            // the index breaks ties, so that equally close positions keep their order like with a stable sort
+            candidates[size++] = Math.min(dx * dx + dy * dy + dz * dz, Integer.MAX_VALUE) << 32 | i;
+        }
+        LongHeapPriorityQueue closest = new LongHeapPriorityQueue(candidates, size);
+
+        boolean exposedOnly = Baritone.settings().allowOnlyExposedOres.value;
+        int exposedRadius = Baritone.settings().allowOnlyExposedOresDistance.value;
+        // ores come in veins, so neighbouring candidates mostly look at the same blocks to see if they're exposed
+        Long2ByteOpenHashMap transparency = new Long2ByteOpenHashMap();
+        List<BlockPos> locs = new ArrayList<>(Math.min(max, size));
+        while (locs.size() < max && !closest.isEmpty()) {
+            BlockPos pos = locs2.get((int) closest.dequeueLong());
+            int x = pos.getX();
+            int y = pos.getY();
+            int z = pos.getZ();
+            // remove any that are within loaded chunks that aren't actually what we want
+            if (ctx.bsi.worldContainsLoadedChunk(x, z) && !filter.has(ctx.get(x, y, z)) && !droppedAt.contains(pos.asLong())) {
+                continue;
+            }
+            // remove any that are implausible to mine (encased in bedrock, or touching lava)
+            if (!plausibleToBreak(ctx, x, y, z)) {
+                continue;
+            }
+            if (exposedOnly && !isNextToAir(ctx, x, y, z, exposedRadius, transparency)) {
+                continue;
+            }
+            locs.add(pos);
         }
         return locs;
     }
 
+    private static LongOpenHashSet toLongSet(List<BlockPos> positions) {
+        LongOpenHashSet set = new LongOpenHashSet(positions.size());
+        for (BlockPos pos : positions) {
+            set.add(pos.asLong());
+        }
+        return set;
+    }
+
     public static boolean isNextToAir(CalculationContext ctx, BlockPos pos) {
-        int radius = Baritone.settings().allowOnlyExposedOresDistance.value;
+        return isNextToAir(ctx, pos.getX(), pos.getY(), pos.getZ(), Baritone.settings().allowOnlyExposedOresDistance.value, null);
+    }
+
+    /**
+     * @param transparency Transparency of the blocks looked at so far, 1 for transparent and 2 for not, or
+     *                     {@code null} to not remember them
+     */
+    private static boolean isNextToAir(CalculationContext ctx, int x, int y, int z, int radius, Long2ByteOpenHashMap transparency) {
+        // only visit the positions within the manhattan distance instead of the whole cube
         for (int dx = -radius; dx <= radius; dx++) {
-            for (int dy = -radius; dy <= radius; dy++) {
-                for (int dz = -radius; dz <= radius; dz++) {
-                    if (Math.abs(dx) + Math.abs(dy) + Math.abs(dz) <= radius
-                            && MovementHelper.isTransparent(ctx.getBlock(pos.getX() + dx, pos.getY() + dy, pos.getZ() + dz))) {
+            int radiusY = radius - Math.abs(dx);
+            for (int dy = -radiusY; dy <= radiusY; dy++) {
+                int radiusZ = radiusY - Math.abs(dy);
+                for (int dz = -radiusZ; dz <= radiusZ; dz++) {
+                    if (isTransparent(ctx, x + dx, y + dy, z + dz, transparency)) {
                         return true;
                     }
                 }
@@ -486,14 +628,30 @@ public final class MineProcess extends BaritoneProcessHelper implements IMinePro
         return false;
     }
 
+    private static boolean isTransparent(CalculationContext ctx, int x, int y, int z, Long2ByteOpenHashMap transparency) {
+        if (transparency == null) {
+            return MovementHelper.isTransparent(ctx.getBlock(x, y, z));
+        }
+        long packed = BlockPos.asLong(x, y, z);
+        byte known = transparency.get(packed);
+        if (known == 0) {
+            known = MovementHelper.isTransparent(ctx.getBlock(x, y, z)) ? (byte) 1 : (byte) 2;
+            transparency.put(packed, known);
+        }
+        return known == 1;
+    }
 
     public static boolean plausibleToBreak(CalculationContext ctx, BlockPos pos) {
-        if (MovementHelper.getMiningDurationTicks(ctx, pos.getX(), pos.getY(), pos.getZ(), ctx.bsi.get0(pos), true) >= COST_INF) {
+        return plausibleToBreak(ctx, pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    private static boolean plausibleToBreak(CalculationContext ctx, int x, int y, int z) {
+        if (MovementHelper.getMiningDurationTicks(ctx, x, y, z, ctx.bsi.get0(x, y, z), true) >= COST_INF) {
             return false;
         }
 
         // bedrock above and below makes it implausible, otherwise we're good
-        return !(ctx.bsi.get0(pos.above()).getBlock() == Blocks.BEDROCK && ctx.bsi.get0(pos.below()).getBlock() == Blocks.BEDROCK);
+        return !(ctx.bsi.get0(x, y + 1, z).getBlock() == Blocks.BEDROCK && ctx.bsi.get0(x, y - 1, z).getBlock() == Blocks.BEDROCK);
     }
 
     @Override
@@ -503,16 +661,23 @@ public final class MineProcess extends BaritoneProcessHelper implements IMinePro
 
     @Override
     public void mine(int quantity, BlockOptionalMetaLookup filter) {
+        if (this.filter != null) {
+            baritone.getTargetIndex().untrack(this.filter);
+        }
         this.filter = filter;
         if (this.filterFilter() == null) {
             this.filter = null;
         }
+        if (this.filter != null) {
+            baritone.getTargetIndex().track(this.filter, LOADED_SEARCH_RADIUS);
+        }
         this.desiredQuantity = quantity;
         this.knownOreLocations = new ArrayList<>();
         this.blacklist = new ArrayList<>();
         this.branchPoint = null;
         this.branchPointRunaway = null;
         this.anticipatedDrops = new HashMap<>();
+        this.visibilityScanner.reset();
         if (filter != null) {
             rescan(new ArrayList<>(), new CalculationContext(baritone));
         }
@@ -0,0 +1,153 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.process;
+
+import baritone.pathing.movement.MovementHelper;
+import baritone.utils.BlockStateInterface;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import net.minecraft.world.phys.shapes.VoxelShape;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where a block could be placed against, for the positions around the player that the builder looks at. This only
+ * depends on the neighbours of a position, so it's kept until one of them changes instead of being worked out again on
+ * every search.
+ * <p>
+ * Not thread safe, the builder only ever has one search using this at a time.
+ */
+final class PlacementFaces {
+
+    private static final Target[] NONE = new Target[0];
+
+    private Long2ObjectOpenHashMap<Target[]> faces = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * What was looked at since the last {@link #retainTouched()}, everything else is forgotten then
+     */
+    private Long2ObjectOpenHashMap<Target[]> touched = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * @return Where to aim to place a block at this position, nearest to the center of each face first
+     */
+    Target[] get(BlockStateInterface bsi, int x, int y, int z) {
+        long pos = BlockPos.asLong(x, y, z);
+        Target[] targets = faces.get(pos);
+        if (targets == null) {
+            targets = compute(bsi, x, y, z);
+        }
+        touched.put(pos, targets);
+        return targets;
+    }
+
+    /**
+     * A block changed, so whatever was known about it and its neighbours might be wrong now
+     */
+    void changed(long pos) {
+        faces.remove(pos);
+        for (Direction dir : Direction.values()) {
+            faces.remove(BlockPos.offset(pos, dir.getStepX(), dir.getStepY(), dir.getStepZ()));
+        }
+    }
+
+    /**
+     * Forgets everything that wasn't looked at since this was last called, so that this doesn't grow as the player
+     * moves around
+     */
+    void retainTouched() {
+        faces = touched;
+        touched = new Long2ObjectOpenHashMap<>(faces.size());
+    }
+
+    void clear() {
+        faces.clear();
+        touched.clear();
+    }
+
+    private static Target[] compute(BlockStateInterface bsi, int x, int y, int z) {
+        List<Target> targets = new ArrayList<>();
+        for (Direction against : Direction.values()) {
+            BlockPos placeAgainstPos = new BlockPos(x + against.getStepX(), y + against.getStepY(), z + against.getStepZ());
+            BlockState placeAgainstState = bsi.get0(placeAgainstPos);
+            if (MovementHelper.isReplaceable(placeAgainstPos.getX(), placeAgainstPos.getY(), placeAgainstPos.getZ(), placeAgainstState, bsi)) {
+                continue;
+            }
+            VoxelShape shape = placeAgainstState.getShape(bsi.access, placeAgainstPos);
+            if (shape.isEmpty()) {
+                continue; // nothing to click on
+            }
+            AABB aabb = shape.bounds();
+            for (Vec3 placementMultiplier : aabbSideMultipliers(against)) {
+                double placeX = placeAgainstPos.getX() + aabb.minX * placementMultiplier.x + aabb.maxX * (1 - placementMultiplier.x);
+                double placeY = placeAgainstPos.getY() + aabb.minY * placementMultiplier.y + aabb.maxY * (1 - placementMultiplier.y);
+                double placeZ = placeAgainstPos.getZ() + aabb.minZ * placementMultiplier.z + aabb.maxZ * (1 - placementMultiplier.z);
+                targets.add(new Target(placeAgainstPos, against.getOpposite(), new Vec3(placeX, placeY, placeZ)));
+            }
+        }
+        return targets.isEmpty() ? NONE : targets.toArray(new Target[0]);
+    }
+
+    private static Vec3[] aabbSideMultipliers(Direction side) {
+        switch (side) {
+            case UP:
+                return new Vec3[]{new Vec3(0.5, 1, 0.5), new Vec3(0.1, 1, 0.5), new Vec3(0.9, 1, 0.5), new Vec3(0.5, 1, 0.1), new Vec3(0.5, 1, 0.9)};
+            case DOWN:
+                return new Vec3[]{new Vec3(0.5, 0, 0.5), new Vec3(0.1, 0, 0.5), new Vec3(0.9, 0, 0.5), new Vec3(0.5, 0, 0.1), new Vec3(0.5, 0, 0.9)};
+            case NORTH:
+            case SOUTH:
+            case EAST:
+            case WEST:
+                double x = side.getStepX() == 0 ? 0.5 : (1 + side.getStepX()) / 2D;
+                double z = side.getStepZ() == 0 ? 0.5 : (1 + side.getStepZ()) / 2D;
+                return new Vec3[]{new Vec3(x, 0.25, z), new Vec3(x, 0.75, z)};
+            default: // null
+                throw new IllegalStateException();
+        }
+    }
+
+    static final class Target {
+
+        /**
+         * The block to click on
+         */
+        final BlockPos against;
+
+        /**
+         * The side of it to click on
+         */
+        final Direction side;
+
+        /**
+         * Where to aim
+         */
+        final Vec3 point;
+
+        private Target(BlockPos against, Direction side, Vec3 point) {
+            this.against = against;
+            this.side = side;
+            this.point = point;
+        }
+    }
+}
@@ -76,6 +76,21 @@ public class BlockStateInterface {
         this.access = new BlockStateInterfaceAccessWrapper(this);
     }
 
+    /**
+     * Another view of the same chunks, for another thread to use at the same time, so that they don't fight over the
+     * last chunk looked at. Only makes sense for an interface that copied the loaded chunks, and unlike the other
+     * constructors this can be called from any thread.
+     */
+    public BlockStateInterface(BlockStateInterface other) {
+        this.world = other.world;
+        this.worldBorder = other.worldBorder;
+        this.worldData = other.worldData;
+        this.provider = other.provider;
+        this.useTheRealWorld = other.useTheRealWorld;
+        this.isPassableBlockPos = new BlockPos.MutableBlockPos();
+        this.access = new BlockStateInterfaceAccessWrapper(this);
+    }
+
     public boolean worldContainsLoadedChunk(int blockX, int blockZ) {
         return provider.hasChunk(blockX >> 4, blockZ >> 4);
     }
@@ -0,0 +1,325 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package baritone.utils;
+
+import baritone.Baritone;
+import baritone.api.event.events.BlockChangeEvent;
+import baritone.api.event.events.WorldEvent;
+import baritone.api.event.listener.AbstractGameEventListener;
+import baritone.api.utils.BetterBlockPos;
+import baritone.api.utils.BlockOptionalMetaLookup;
+import baritone.api.utils.IPlayerContext;
+import baritone.api.utils.Pair;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.util.Mth;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.ClipContext;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.BlockHitResult;
+import net.minecraft.world.phys.HitResult;
+import net.minecraft.world.phys.Vec3;
+import net.minecraft.world.phys.shapes.Shapes;
+import net.minecraft.world.phys.shapes.VoxelShape;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds the blocks around the player that can actually be seen, for legit mining, where only blocks that could have
+ * been seen are allowed to be mined. Each pass runs on another thread against a copy of the loaded chunks, so that
+ * the game thread only ever picks up the results.
+ * <p>
+ * Raytracing is by far the most expensive part of this, so the positions that turned out to be hidden are
+ * remembered, each along with where it was looked at from. One is only looked at again once the player's eyes have
+ * moved far enough from there, or a block changed somewhere between there and it.
+ */
+public final class VisibilityScanner implements AbstractGameEventListener {
+
+    /**
+     * The search is a cube of this radius around the player's feet
+     */
+    private static final int SEARCH_RADIUS = 10;
+
+    /**
+     * At least 10 * sqrt(3) with some extra space to account for positioning within the block
+     */
+    private static final double FAKED_BLOCK_REACH_DISTANCE = 20;
+
+    /**
+     * How far the player's eyes can move before a hidden position has to be checked again
+     */
+    private static final double MOVEMENT_THRESHOLD = 0.5;
+
+    /**
+     * Past this many block changes between passes, it's quicker to check everything again than to work out which
+     * hidden positions each of them could have revealed
+     */
+    private static final int MAX_CHANGES = 256;
+
+    private static final Vec3[] BLOCK_SIDE_MULTIPLIERS = new Vec3[]{
+            new Vec3(0.5, 0, 0.5), // Down
+            new Vec3(0.5, 1, 0.5), // Up
+            new Vec3(0.5, 0.5, 0), // North
+            new Vec3(0.5, 0.5, 1), // South
+            new Vec3(0, 0.5, 0.5), // West
+            new Vec3(1, 0.5, 0.5)  // East
+    };
+
+    private final IPlayerContext ctx;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Positions that couldn't be seen, and the eye position they couldn't be seen from
+     */
+    private Long2ObjectOpenHashMap<Vec3> hidden = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * Blocks that changed since {@link #hidden} was last brought up to date, or {@code null} if there were too many
+     * and everything has to be checked again
+     */
+    private LongArrayList changes = new LongArrayList();
+
+    /**
+     * Incremented on {@link #reset()}, so that a pass that was started before doesn't hand out what it found
+     */
+    private int session;
+
+    /**
+     * Visible blocks found by passes, waiting to be picked up by {@link #poll()}
+     */
+    private List<BlockPos> found = new ArrayList<>();
+
+    public VisibilityScanner(Baritone baritone) {
+        this.ctx = baritone.getPlayerContext();
+        baritone.getGameEventHandler().registerEventListener(this);
+    }
+
+    /**
+     * Starts a pass looking for visible blocks matching the filter, unless one is still running. Must be called from
+     * the game thread.
+     *
+     * @param filter The blocks to look for
+     * @param known  The blocks that are already known about, which don't need to be looked for again
+     */
+    public void request(BlockOptionalMetaLookup filter, Collection<BlockPos> known) {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Vec3 eyes = ctx.player().getEyePosition(1.0F);
+            BetterBlockPos feet = ctx.playerFeet();
+            int session;
+            Long2ObjectOpenHashMap<Vec3> hidden;
+            synchronized (this) {
+                update(eyes, feet);
+                session = this.session;
+                hidden = new Long2ObjectOpenHashMap<>(this.hidden);
+            }
+            LongOpenHashSet knownSet = new LongOpenHashSet(known.size());
+            for (BlockPos pos : known) {
+                knownSet.add(pos.asLong());
+            }
+            BlockStateInterface bsi = new BlockStateInterface(ctx, true);
+            Entity player = ctx.player();
+            boolean includeDiagonals = Baritone.settings().legitMineIncludeDiagonals.value;
+            Baritone.getExecutor().execute(() -> {
+                try {
+                    List<BlockPos> visible = scan(bsi, player, eyes, feet, filter, knownSet, hidden, includeDiagonals);
+                    synchronized (this) {
+                        if (this.session == session) {
+                            found.addAll(visible);
+                            // whatever changed while this was running is still in changes, and is applied to this
+                            // before the next pass starts
+                            this.hidden = hidden;
+                        }
+                    }
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * @return The visible blocks found since this was last called
+     */
+    public synchronized List<BlockPos> poll() {
+        if (found.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<BlockPos> result = found;
+        found = new ArrayList<>();
+        return result;
+    }
+
+    /**
+     * Forgets everything, for when the blocks being looked for change
+     */
+    public synchronized void reset() {
+        hidden = new Long2ObjectOpenHashMap<>();
+        changes = new LongArrayList();
+        session++;
+        found = new ArrayList<>();
+    }
+
+    @Override
+    public synchronized void onBlockChange(BlockChangeEvent event) {
+        // an opening could have made something visible, things that were already seen stay seen anyway
+        if (changes == null) {
+            return;
+        }
+        for (Pair<BlockPos, BlockState> change : event.getBlocks()) {
+            changes.add(change.first().asLong());
+        }
+        if (changes.size() > MAX_CHANGES) {
+            changes = null;
+        }
+    }
+
+    @Override
+    public synchronized void onWorldEvent(WorldEvent event) {
+        reset();
+    }
+
+    /**
+     * Forgets the hidden positions that might not be hidden anymore: those that are outside of the search now, those
+     * that were looked at from too far away from where the eyes are now, and those that a changed block could have
+     * been in the way of.
+     */
+    private void update(Vec3 eyes, BlockPos feet) {
+        LongArrayList changes = this.changes;
+        this.changes = new LongArrayList();
+        if (changes == null) {
+            hidden = new Long2ObjectOpenHashMap<>();
+            return;
+        }
+        hidden.long2ObjectEntrySet().removeIf(entry -> {
+            long pos = entry.getLongKey();
+            Vec3 from = entry.getValue();
+            if (Math.abs(BlockPos.getX(pos) - feet.getX()) > SEARCH_RADIUS
+                    || Math.abs(BlockPos.getY(pos) - feet.getY()) > SEARCH_RADIUS
+                    || Math.abs(BlockPos.getZ(pos) - feet.getZ()) > SEARCH_RADIUS) {
+                return true;
+            }
+            if (from.distanceToSqr(eyes) > MOVEMENT_THRESHOLD * MOVEMENT_THRESHOLD) {
+                return true;
+            }
+            for (int i = 0; i < changes.size(); i++) {
+                if (between(changes.getLong(i), from, pos)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * @return Whether the block could be in the way of looking at the target from the eye position, in other words
+     * whether it's in the box spanned by the two, give or take a block
+     */
+    private static boolean between(long block, Vec3 from, long target) {
+        int x = BlockPos.getX(block);
+        int y = BlockPos.getY(block);
+        int z = BlockPos.getZ(block);
+        return x >= Math.min(Mth.floor(from.x), BlockPos.getX(target)) - 1 && x <= Math.max(Mth.floor(from.x), BlockPos.getX(target)) + 1
+                && y >= Math.min(Mth.floor(from.y), BlockPos.getY(target)) - 1 && y <= Math.max(Mth.floor(from.y), BlockPos.getY(target)) + 1
+                && z >= Math.min(Mth.floor(from.z), BlockPos.getZ(target)) - 1 && z <= Math.max(Mth.floor(from.z), BlockPos.getZ(target)) + 1;
+    }
+
+    private static List<BlockPos> scan(BlockStateInterface bsi, Entity player, Vec3 eyes, BlockPos feet, BlockOptionalMetaLookup filter, LongOpenHashSet known, Long2ObjectOpenHashMap<Vec3> hidden, boolean includeDiagonals) {
+        List<BlockPos> visible = new ArrayList<>();
+        for (int x = feet.getX() - SEARCH_RADIUS; x <= feet.getX() + SEARCH_RADIUS; x++) {
+            for (int y = feet.getY() - SEARCH_RADIUS; y <= feet.getY() + SEARCH_RADIUS; y++) {
+                for (int z = feet.getZ() - SEARCH_RADIUS; z <= feet.getZ() + SEARCH_RADIUS; z++) {
+                    long packed = BlockPos.asLong(x, y, z);
+                    if (known.contains(packed) || hidden.containsKey(packed) || !filter.has(bsi.get0(x, y, z))) {
+                        continue;
+                    }
+                    // crucial to only add blocks we can see because otherwise this
+                    // is an x-ray and it'll get caught
+                    BlockPos pos = new BlockPos(x, y, z);
+                    if ((includeDiagonals && nextToKnown(known, x, y, z)) || isVisible(bsi, player, eyes, pos, FAKED_BLOCK_REACH_DISTANCE)) {
+                        known.add(packed);
+                        visible.add(pos);
+                    } else {
+                        hidden.put(packed, eyes);
+                    }
+                }
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * @return Whether a known block is within a pythagorean distance of sqrt(2)
+     */
+    private static boolean nextToKnown(LongOpenHashSet known, int x, int y, int z) {
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    if (dx * dx + dy * dy + dz * dz <= 2 && known.contains(BlockPos.asLong(x + dx, y + dy, z + dz))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The same check as {@link baritone.api.utils.RotationUtils#reachable}, the center and then the middle of each
+     * face, but raytracing through the copied chunks instead of the world, so this can be used off the game thread
+     */
+    public static boolean isVisible(BlockStateInterface bsi, Entity player, Vec3 eyes, BlockPos pos, double reach) {
+        if (hits(bsi, player, eyes, Vec3.atCenterOf(pos), pos, reach)) {
+            return true;
+        }
+        BlockState state = bsi.get0(pos);
+        VoxelShape shape = state.getShape(bsi.access, pos);
+        if (shape.isEmpty()) {
+            shape = Shapes.block();
+        }
+        for (Vec3 sideOffset : BLOCK_SIDE_MULTIPLIERS) {
+            double xDiff = shape.min(Direction.Axis.X) * sideOffset.x + shape.max(Direction.Axis.X) * (1 - sideOffset.x);
+            double yDiff = shape.min(Direction.Axis.Y) * sideOffset.y + shape.max(Direction.Axis.Y) * (1 - sideOffset.y);
+            double zDiff = shape.min(Direction.Axis.Z) * sideOffset.z + shape.max(Direction.Axis.Z) * (1 - sideOffset.z);
+            if (hits(bsi, player, eyes, new Vec3(pos.getX() + xDiff, pos.getY() + yDiff, pos.getZ() + zDiff), pos, reach)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hits(BlockStateInterface bsi, Entity player, Vec3 eyes, Vec3 target, BlockPos pos, double reach) {
+        Vec3 direction = target.subtract(eyes).normalize();
+        Vec3 end = eyes.add(direction.scale(reach));
+        HitResult result = bsi.access.clip(new ClipContext(eyes, end, ClipContext.Block.OUTLINE, ClipContext.Fluid.NONE, player));
+        return result != null && result.getType() == HitResult.Type.BLOCK && ((BlockHitResult) result).getBlockPos().equals(pos);
+    }
+}
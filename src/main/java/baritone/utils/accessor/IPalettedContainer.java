@@ -17,6 +17,7 @@
 
 package baritone.utils.accessor;
 
+import baritone.cache.SectionSummary;
 import net.minecraft.util.BitStorage;
 import net.minecraft.world.level.chunk.Palette;
 
@@ -26,6 +27,15 @@ public interface IPalettedContainer<T> {
 
     BitStorage getStorage();
 
+    /**
+     * @return A counter that changes whenever the contents of this container do
+     */
+    int getModificationCount();
+
+    SectionSummary getSummary();
+
+    void setSummary(SectionSummary summary);
+
 
     public interface IData<T> {
 
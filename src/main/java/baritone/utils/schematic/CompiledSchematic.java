@@ -0,0 +1,115 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.utils.schematic;
+
+import baritone.api.schematic.AbstractSchematic;
+import baritone.api.schematic.ISchematic;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A schematic under any number of masks that only depend on the position, flattened so that asking about a position
+ * costs the same however many masks there are. Whether a position is part of the masks is worked out for a whole
+ * 16x16x16 tile the first time any position in it is asked about, and desired states come straight from the
+ * schematic under the masks.
+ *
+ * @see SchematicCompiler
+ */
+public final class CompiledSchematic extends AbstractSchematic {
+
+    private static final int TILE_BITS = 4;
+    private static final int TILE_SIZE = 1 << TILE_BITS;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    /**
+     * The outermost mask, which is asked about every position of a tile once
+     */
+    private final ISchematic masked;
+
+    /**
+     * The schematic under all of the masks
+     */
+    private final ISchematic source;
+
+    private final int tilesX;
+    private final int tilesZ;
+
+    /**
+     * One bit per position of each tile, indexed by y, z and then x within the tile. Tiles that haven't been worked
+     * out yet are {@code null}.
+     */
+    private final AtomicReferenceArray<long[]> tiles;
+
+    CompiledSchematic(ISchematic masked, ISchematic source) {
+        super(masked.widthX(), masked.heightY(), masked.lengthZ());
+        this.masked = masked;
+        this.source = source;
+        this.tilesX = (this.x + TILE_MASK) >> TILE_BITS;
+        int tilesY = (this.y + TILE_MASK) >> TILE_BITS;
+        this.tilesZ = (this.z + TILE_MASK) >> TILE_BITS;
+        this.tiles = new AtomicReferenceArray<>(Math.multiplyExact(Math.multiplyExact(tilesX, tilesY), tilesZ));
+    }
+
+    @Override
+    public boolean inSchematic(int x, int y, int z, BlockState currentState) {
+        if (x < 0 || x >= this.x || y < 0 || y >= this.y || z < 0 || z >= this.z) {
+            return false;
+        }
+        int tileX = x >> TILE_BITS;
+        int tileY = y >> TILE_BITS;
+        int tileZ = z >> TILE_BITS;
+        int tileIndex = (tileY * tilesZ + tileZ) * tilesX + tileX;
+        long[] tile = tiles.get(tileIndex);
+        if (tile == null) {
+            // if two threads get here at once they'll both come up with the same thing, so it doesn't matter who wins
+            tile = computeTile(tileX << TILE_BITS, tileY << TILE_BITS, tileZ << TILE_BITS);
+            tiles.set(tileIndex, tile);
+        }
+        int index = ((y & TILE_MASK) << TILE_BITS | (z & TILE_MASK)) << TILE_BITS | (x & TILE_MASK);
+        return (tile[index >>> 6] & 1L << index) != 0;
+    }
+
+    @Override
+    public BlockState desiredState(int x, int y, int z, BlockState current, List<BlockState> approxPlaceable) {
+        return source.desiredState(x, y, z, current, approxPlaceable);
+    }
+
+    @Override
+    public void reset() {
+        masked.reset();
+    }
+
+    private long[] computeTile(int minX, int minY, int minZ) {
+        long[] tile = new long[TILE_SIZE * TILE_SIZE * TILE_SIZE / 64];
+        for (int y = minY; y < Math.min(minY + TILE_SIZE, this.y); y++) {
+            for (int z = minZ; z < Math.min(minZ + TILE_SIZE, this.z); z++) {
+                for (int x = minX; x < Math.min(minX + TILE_SIZE, this.x); x++) {
+                    // static masks don't look at the current state
+                    if (masked.inSchematic(x, y, z, null)) {
+                        int index = ((y & TILE_MASK) << TILE_BITS | (z & TILE_MASK)) << TILE_BITS | (x & TILE_MASK);
+                        tile[index >>> 6] |= 1L << index;
+                    }
+                }
+            }
+        }
+        return tile;
+    }
+}
@@ -38,12 +38,18 @@ public class MapArtSchematic extends MaskSchematic {
         return y >= this.heightMap[x][z];
     }
 
+    @Override
+    public boolean hasStaticMask() {
+        return true;
+    }
+
     private static int[][] generateHeightMap(IStaticSchematic schematic) {
         int[][] heightMap = new int[schematic.widthX()][schematic.lengthZ()];
+        BlockState[] column = new BlockState[schematic.heightY()];
 
         for (int x = 0; x < schematic.widthX(); x++) {
             for (int z = 0; z < schematic.lengthZ(); z++) {
-                BlockState[] column = schematic.getColumn(x, z);
+                schematic.getColumn(x, z, column);
                 OptionalInt lowestBlockY = lastIndexMatching(column, state -> !(state.getBlock() instanceof AirBlock));
                 if (lowestBlockY.isPresent()) {
                     heightMap[x][z] = lowestBlockY.getAsInt();
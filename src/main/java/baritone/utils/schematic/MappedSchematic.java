@@ -0,0 +1,105 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.utils.schematic;
+
+import baritone.api.schematic.AbstractSchematic;
+import baritone.api.schematic.IStaticSchematic;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A schematic read straight out of a file in the format written by {@link SchematicCache}, usually memory mapped, so
+ * that the states are only ever decoded where they're looked at and never take up any heap.
+ * <p>
+ * Reads are safe from any thread.
+ */
+public final class MappedSchematic extends AbstractSchematic implements IStaticSchematic {
+
+    /**
+     * Keeps the mapping alive for as long as this is
+     */
+    private final ByteBuffer buffer;
+
+    private final BlockState[] palette;
+    private final int bits;
+
+    /**
+     * Where in the buffer the packed palette indices start
+     */
+    private final int body;
+
+    /**
+     * @param buffer  The whole file, only ever read with absolute gets
+     * @param palette The block states by palette index
+     * @param bits    How many bits each palette index takes
+     * @param body    Where in the buffer the palette indices start
+     */
+    MappedSchematic(int x, int y, int z, ByteBuffer buffer, BlockState[] palette, int bits, int body) {
+        super(x, y, z);
+        this.buffer = buffer;
+        this.palette = palette;
+        this.bits = bits;
+        this.body = body;
+    }
+
+    @Override
+    public BlockState desiredState(int x, int y, int z, BlockState current, List<BlockState> approxPlaceable) {
+        return getDirect(x, y, z);
+    }
+
+    @Override
+    public BlockState getDirect(int x, int y, int z) {
+        if (bits == 0) {
+            return palette[0];
+        }
+        return palette[read(buffer, body, bits, (long) ((x * this.z + z) * this.y + y) * bits)];
+    }
+
+    @Override
+    public void getColumn(int x, int z, BlockState[] into) {
+        if (bits == 0) {
+            Arrays.fill(into, 0, this.y, palette[0]);
+            return;
+        }
+        long bitIndex = (long) (x * this.z + z) * this.y * bits;
+        for (int y = 0; y < this.y; y++, bitIndex += bits) {
+            into[y] = palette[read(buffer, body, bits, bitIndex)];
+        }
+    }
+
+    /**
+     * The same packing as {@link PalettedArray}, an index can span two longs
+     *
+     * @param body     Where in the buffer the packed indices start
+     * @param bits     How many bits each index takes, at least one
+     * @param bitIndex Which bit, counted from the start of the body, the index starts at
+     */
+    static int read(ByteBuffer buffer, int body, int bits, long bitIndex) {
+        int word = (int) (bitIndex >>> 6);
+        int offset = (int) (bitIndex & 63);
+        long value = buffer.getLong(body + word * 8) >>> offset;
+        if (offset + bits > 64) {
+            value |= buffer.getLong(body + (word + 1) * 8) << (64 - offset);
+        }
+        return (int) (value & ((1L << bits) - 1));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package baritone.utils.schematic;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size array that stores each value as an index into a palette of the distinct values, packed into as few bits
+ * as the size of the palette allows, like the block states of a chunk section. Memory use scales with the number of
+ * distinct values rather than the number of elements. Values are compared by identity, and every element starts out
+ * as {@code null}.
+ * <p>
+ * Reads are safe from any thread once writing has finished.
+ *
+ * @param <T> The type of the values
+ */
+public final class PalettedArray<T> {
+
+    private final int size;
+
+    private Object[] palette = new Object[]{null};
+    private int paletteSize = 1;
+    private final Reference2IntOpenHashMap<T> ids = new Reference2IntOpenHashMap<>();
+
+    /**
+     * The palette indices, {@link #bits} each, packed back to back. An index can span two longs.
+     */
+    private long[] data = new long[0];
+    private int bits;
+    private long mask;
+
+    public PalettedArray(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must be >= 0");
+        }
+        this.size = size;
+        this.ids.defaultReturnValue(-1);
+        this.ids.put(null, 0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of distinct values that have been stored, including {@code null}
+     */
+    public int paletteSize() {
+        return paletteSize;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) palette[id(index)];
+    }
+
+    /**
+     * Copies a run of elements into an array, which is quicker than getting them one by one.
+     *
+     * @param from The index of the first element
+     * @param out  The array to copy into, as many elements as it's long are copied
+     */
+    @SuppressWarnings("unchecked")
+    public void get(int from, T[] out) {
+        if (from < 0 || from + out.length > size) {
+            throw new IndexOutOfBoundsException(from);
+        }
+        if (bits == 0) {
+            Arrays.fill(out, (T) palette[0]);
+            return;
+        }
+        long bitIndex = (long) from * bits;
+        for (int i = 0; i < out.length; i++, bitIndex += bits) {
+            out[i] = (T) palette[read(bitIndex)];
+        }
+    }
+
+    public void set(int index, T value) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int id = ids.getInt(value);
+        if (id == -1) {
+            id = add(value);
+        }
+        if (bits != 0) {
+            write((long) index * bits, id);
+        }
+    }
+
+    private int id(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return bits == 0 ? 0 : read((long) index * bits);
+    }
+
+    private int read(long bitIndex) {
+        int word = (int) (bitIndex >>> 6);
+        int offset = (int) (bitIndex & 63);
+        long value = data[word] >>> offset;
+        if (offset + bits > 64) {
+            value |= data[word + 1] << (64 - offset);
+        }
+        return (int) (value & mask);
+    }
+
+    private void write(long bitIndex, int id) {
+        int word = (int) (bitIndex >>> 6);
+        int offset = (int) (bitIndex & 63);
+        data[word] = (data[word] & ~(mask << offset)) | ((long) id << offset);
+        if (offset + bits > 64) {
+            int spill = 64 - offset;
+            data[word + 1] = (data[word + 1] & ~(mask >>> spill)) | ((long) id >>> spill);
+        }
+    }
+
+    private int add(T value) {
+        int id = paletteSize++;
+        if (id == palette.length) {
+            palette = Arrays.copyOf(palette, palette.length * 2);
+        }
+        palette[id] = value;
+        ids.put(value, id);
+        if (id > mask) {
+            resize(32 - Integer.numberOfLeadingZeros(id));
+        }
+        return id;
+    }
+
+    /**
+     * Repacks every element with a new number of bits. The palette only ever grows, so this happens at most once per
+     * power of two.
+     */
+    private void resize(int newBits) {
+        long[] oldData = data;
+        int oldBits = bits;
+        long oldMask = mask;
+        bits = newBits;
+        mask = (1L << newBits) - 1;
+        data = new long[(int) (((long) size * newBits + 63) >>> 6)];
+        if (oldBits == 0) {
+            // everything was the first palette entry, which is 0
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            long oldBitIndex = (long) i * oldBits;
+            int word = (int) (oldBitIndex >>> 6);
+            int offset = (int) (oldBitIndex & 63);
+            long value = oldData[word] >>> offset;
+            if (offset + oldBits > 64) {
+                value |= oldData[word + 1] << (64 - offset);
+            }
+            int id = (int) (value & oldMask);
+            if (id != 0) {
+                write((long) i * newBits, id);
+            }
+        }
+    }
+}
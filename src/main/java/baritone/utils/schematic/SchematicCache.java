@@ -0,0 +1,342 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.utils.schematic;
+
+import baritone.Baritone;
+import baritone.api.schematic.IStaticSchematic;
+import baritone.api.schematic.format.ISchematicFormat;
+import baritone.utils.schematic.format.defaults.LazyLitematicaSchematic;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.SharedConstants;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a copy of every schematic file that's been parsed in a format that doesn't need parsing, so that loading the
+ * same file again skips decompressing and decoding the NBT and looking up every block state by name. The copies are
+ * keyed by a hash of the file's contents, so an edited file is never mistaken for the old one.
+ * <p>
+ * A copy is the size of the schematic, its palette as block state ids, and then the palette index of each position,
+ * packed the same way as a {@link PalettedArray}. That's memory mapped when it's loaded, see {@link MappedSchematic}.
+ * Block state ids depend on the game version and on what's registered, so every copy records a fingerprint of which
+ * state each id stood for, and copies made with a different one are ignored.
+ */
+public final class SchematicCache {
+
+    private static final int MAGIC = 0x42534348; // BSCH
+    private static final int VERSION = 2;
+    private static final String EXTENSION = ".bsc";
+
+    /**
+     * How many copies to keep, least recently used ones are deleted first
+     */
+    private static final int MAX_ENTRIES = 16;
+
+    private SchematicCache() {}
+
+    /**
+     * Loads a schematic file, from its cached copy if there is one. Otherwise the file is parsed as usual, and a copy
+     * is written in the background.
+     *
+     * @param format    The format of the file
+     * @param file      The file
+     * @param directory Where the copies are kept
+     * @return The schematic
+     */
+    public static IStaticSchematic load(ISchematicFormat format, File file, Path directory) throws IOException {
+        if (!Baritone.settings().schematicCache.value) {
+            return parse(format, file);
+        }
+        Path cached = directory.resolve(hash(file) + EXTENSION);
+        if (Files.isRegularFile(cached)) {
+            try {
+                IStaticSchematic schematic = read(cached);
+                Files.setLastModifiedTime(cached, FileTime.fromMillis(System.currentTimeMillis()));
+                return schematic;
+            } catch (IOException | RuntimeException e) {
+                // out of date or broken, it gets replaced below
+            }
+        }
+        IStaticSchematic parsed = parse(format, file);
+        if (parsed instanceof LazyLitematicaSchematic) {
+            // copying it would decode every tile through its small cache, which is exactly what it's there to avoid
+            return parsed;
+        }
+        Baritone.getExecutor().execute(() -> {
+            try {
+                write(parsed, cached);
+                prune(directory);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        return parsed;
+    }
+
+    private static IStaticSchematic parse(ISchematicFormat format, File file) throws IOException {
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            return format.parse(input);
+        }
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hash(File file) throws IOException {
+        MessageDigest digest = sha1();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static int dataVersion() {
+        return SharedConstants.getCurrentVersion().getDataVersion().getVersion();
+    }
+
+    /**
+     * A hash of which block state every id stands for, so that a copy made while ids were assigned differently, for
+     * example with another set of mods at the same number of states, is never read. The registry doesn't change once
+     * the game is up, so this is only worked out once.
+     */
+    private static final class RegistryFingerprint {
+
+        private static final long VALUE = compute();
+
+        private static long compute() {
+            MessageDigest digest = sha1();
+            for (BlockState state : Block.BLOCK_STATE_REGISTRY) {
+                digest.update((Block.BLOCK_STATE_REGISTRY.getId(state) + "=" + state + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        }
+    }
+
+    static MappedSchematic read(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Too large");
+            }
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return read(buffer);
+    }
+
+    static MappedSchematic read(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a cached schematic");
+        }
+        if (buffer.getInt(8) != dataVersion() || buffer.getLong(12) != RegistryFingerprint.VALUE) {
+            throw new IOException("Cached with different block state ids");
+        }
+        int x = buffer.getInt(20);
+        int y = buffer.getInt(24);
+        int z = buffer.getInt(28);
+        int paletteSize = buffer.getInt(32);
+        if (x < 0 || y < 0 || z < 0 || paletteSize < 1) {
+            throw new IOException("Corrupt header");
+        }
+        BlockState[] palette = new BlockState[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            int id = buffer.getInt(36 + i * 4);
+            if (id != -1) {
+                palette[i] = Block.BLOCK_STATE_REGISTRY.byId(id);
+                if (palette[i] == null) {
+                    throw new IOException("Unknown block state id " + id);
+                }
+            }
+        }
+        int bits = buffer.getInt(36 + paletteSize * 4);
+        int body = 40 + paletteSize * 4;
+        if (bits != bitsFor(paletteSize) || (long) body + bodyLength((long) x * y * z, bits) != buffer.capacity()) {
+            throw new IOException("Corrupt body");
+        }
+        return new MappedSchematic(x, y, z, buffer, palette, bits, body);
+    }
+
+    static void write(IStaticSchematic schematic, Path path) throws IOException {
+        int x = schematic.widthX();
+        int y = schematic.heightY();
+        int z = schematic.lengthZ();
+        // the palette has to be known before the first index can be written
+        Reference2IntOpenHashMap<BlockState> ids = new Reference2IntOpenHashMap<>();
+        ids.defaultReturnValue(-1);
+        List<BlockState> palette = new ArrayList<>();
+        BlockState[] column = new BlockState[y];
+        for (int blockX = 0; blockX < x; blockX++) {
+            for (int blockZ = 0; blockZ < z; blockZ++) {
+                schematic.getColumn(blockX, blockZ, column);
+                for (BlockState state : column) {
+                    if (!ids.containsKey(state)) {
+                        ids.put(state, palette.size());
+                        palette.add(state);
+                    }
+                }
+            }
+        }
+        if (palette.isEmpty()) {
+            palette.add(null);
+        }
+        int bits = bitsFor(palette.size());
+        if (40L + palette.size() * 4L + bodyLength((long) x * y * z, bits) > Integer.MAX_VALUE) {
+            return; // can't be mapped in one go, not worth it
+        }
+        Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(path.getParent(), "schematic", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(dataVersion());
+                out.writeLong(RegistryFingerprint.VALUE);
+                out.writeInt(x);
+                out.writeInt(y);
+                out.writeInt(z);
+                out.writeInt(palette.size());
+                for (BlockState state : palette) {
+                    out.writeInt(state == null ? -1 : Block.BLOCK_STATE_REGISTRY.getId(state));
+                }
+                out.writeInt(bits);
+                if (bits != 0) {
+                    IndexWriter indices = new IndexWriter(out, bits);
+                    for (int blockX = 0; blockX < x; blockX++) {
+                        for (int blockZ = 0; blockZ < z; blockZ++) {
+                            schematic.getColumn(blockX, blockZ, column);
+                            for (BlockState state : column) {
+                                indices.write(ids.getInt(state));
+                            }
+                        }
+                    }
+                    indices.finish();
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void prune(Path directory) throws IOException {
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(directory)) {
+            entries = files.filter(file -> file.getFileName().toString().endsWith(EXTENSION)).collect(Collectors.toList());
+        }
+        if (entries.size() <= MAX_ENTRIES) {
+            return;
+        }
+        entries.sort(Comparator.comparing(file -> {
+            try {
+                return Files.getLastModifiedTime(file);
+            } catch (IOException e) {
+                return FileTime.fromMillis(0);
+            }
+        }));
+        for (Path file : entries.subList(0, entries.size() - MAX_ENTRIES)) {
+            try {
+                Files.delete(file);
+            } catch (IOException ignored) {
+                // still mapped somewhere, on some platforms that means it can't be deleted yet
+            }
+        }
+    }
+
+    static int bitsFor(int paletteSize) {
+        return paletteSize <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(paletteSize - 1);
+    }
+
+    static long bodyLength(long volume, int bits) {
+        return (volume * bits + 63) >>> 6 << 3;
+    }
+
+    /**
+     * Packs palette indices one after another the same way as a {@link PalettedArray}, so an index can span two
+     * longs. Read back with {@link MappedSchematic#read(ByteBuffer, int, int, long)}.
+     */
+    static final class IndexWriter {
+
+        private final DataOutput out;
+        private final int bits;
+        private long word;
+        private int filled;
+
+        IndexWriter(DataOutput out, int bits) {
+            this.out = out;
+            this.bits = bits;
+        }
+
+        void write(int id) throws IOException {
+            word |= (long) id << filled;
+            filled += bits;
+            if (filled >= 64) {
+                out.writeLong(word);
+                filled -= 64;
+                // whatever didn't fit goes at the start of the next one
+                word = filled == 0 ? 0 : (long) id >>> (bits - filled);
+            }
+        }
+
+        /**
+         * Writes out the last, partly filled long
+         */
+        void finish() throws IOException {
+            if (filled > 0) {
+                out.writeLong(word);
+                word = 0;
+                filled = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.utils.schematic;
+
+import baritone.api.schematic.FillSchematic;
+import baritone.api.schematic.ISchematic;
+import baritone.api.schematic.IStaticSchematic;
+import baritone.api.schematic.MaskSchematic;
+
+/**
+ * Flattens stacks of schematic wrappers before building, so that asking the result about a position doesn't cost
+ * more the more wrappers there are.
+ * <p>
+ * Masks that only depend on the position are fused together with the bounds of the schematic under them into a
+ * {@link CompiledSchematic}. Anything that depends on the current state, like a {@link baritone.api.schematic.ReplaceSchematic},
+ * is left as it is.
+ */
+public final class SchematicCompiler {
+
+    private SchematicCompiler() {}
+
+    public static ISchematic compile(ISchematic schematic) {
+        if (!(schematic instanceof MaskSchematic)) {
+            return schematic;
+        }
+        ISchematic source = schematic;
+        while (source instanceof MaskSchematic) {
+            MaskSchematic mask = (MaskSchematic) source;
+            if (!mask.hasStaticMask()) {
+                return schematic;
+            }
+            source = mask.getSchematic();
+        }
+        if (!hasStaticBounds(source)) {
+            return schematic;
+        }
+        return new CompiledSchematic(schematic, source);
+    }
+
+    /**
+     * @return Whether the schematic is known to use the default {@link ISchematic#inSchematic}, which only checks the
+     * position against its size
+     */
+    private static boolean hasStaticBounds(ISchematic schematic) {
+        return schematic instanceof IStaticSchematic || schematic instanceof FillSchematic;
+    }
+}
@@ -50,4 +50,9 @@ public class SelectionSchematic extends MaskSchematic {
         }
         return false;
     }
+
+    @Override
+    public boolean hasStaticMask() {
+        return true;
+    }
 }
@@ -24,26 +24,61 @@ import net.minecraft.world.level.block.state.BlockState;
 
 /**
  * Default implementation of {@link IStaticSchematic}
+ * <p>
+ * The states are kept in a {@link PalettedArray}, column by column, so even very large schematics only take a few
+ * bits per block.
  *
  * @author Brady
  * @since 12/23/2019
  */
 public class StaticSchematic extends AbstractSchematic implements IStaticSchematic {
 
-    protected BlockState[][][] states;
+    protected PalettedArray<BlockState> states;
+
+    public StaticSchematic() {}
+
+    /**
+     * @param states The states, indexed by x, z and then y
+     */
+    public StaticSchematic(BlockState[][][] states) {
+        super(states.length, states.length == 0 || states[0].length == 0 ? 0 : states[0][0].length, states.length == 0 ? 0 : states[0].length);
+        initStates();
+        for (int x = 0; x < this.x; x++) {
+            for (int z = 0; z < this.z; z++) {
+                for (int y = 0; y < this.y; y++) {
+                    setDirect(x, y, z, states[x][z][y]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Allocates the states for the current size, all {@code null}
+     */
+    protected void initStates() {
+        this.states = new PalettedArray<>(Math.multiplyExact(Math.multiplyExact(this.x, this.z), this.y));
+    }
 
     @Override
     public BlockState desiredState(int x, int y, int z, BlockState current, List<BlockState> approxPlaceable) {
-        return this.states[x][z][y];
+        return this.states.get(index(x, y, z));
     }
 
     @Override
     public BlockState getDirect(int x, int y, int z) {
-        return this.states[x][z][y];
+        return this.states.get(index(x, y, z));
     }
 
     @Override
-    public BlockState[] getColumn(int x, int z) {
-        return this.states[x][z];
+    public void getColumn(int x, int z, BlockState[] into) {
+        this.states.get(index(x, 0, z), into);
+    }
+
+    protected void setDirect(int x, int y, int z, BlockState state) {
+        this.states.set(index(x, y, z), state);
+    }
+
+    private int index(int x, int y, int z) {
+        return (x * this.z + z) * this.y + y;
     }
 }
@@ -17,8 +17,10 @@
 
 package baritone.utils.schematic.format;
 
+import baritone.Baritone;
 import baritone.api.schematic.IStaticSchematic;
 import baritone.api.schematic.format.ISchematicFormat;
+import baritone.utils.schematic.format.defaults.LazyLitematicaSchematic;
 import baritone.utils.schematic.format.defaults.LitematicaSchematic;
 import baritone.utils.schematic.format.defaults.MCEditSchematic;
 import baritone.utils.schematic.format.defaults.SpongeSchematic;
@@ -81,6 +83,9 @@ public enum DefaultSchematicFormats implements ISchematicFormat {
                 case 5: //1.13-1.17
                     throw new UnsupportedOperationException("This litematic Version is too old.");
                 case 6: //1.18+
+                    if (Baritone.settings().lazySchematicLoading.value) {
+                        return new LazyLitematicaSchematic(nbt, Baritone.settings().schematicTileCacheSize.value);
+                    }
                     return new LitematicaSchematic(nbt, false);
                 default:
                     throw new UnsupportedOperationException("Unsuported Version of a Litematica Schematic");
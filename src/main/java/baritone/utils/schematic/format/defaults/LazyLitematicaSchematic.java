@@ -0,0 +1,184 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.utils.schematic.format.defaults;
+
+import baritone.api.schematic.AbstractSchematic;
+import baritone.api.schematic.IStaticSchematic;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.util.List;
+
+/**
+ * A litematica schematic that is only decoded where it's looked at. The packed block states of each subregion are
+ * kept as they were read from the file, and are decoded 16x16x16 at a time into a bounded cache of tiles, least
+ * recently used first out. Unlike {@link LitematicaSchematic}, this can't be rotated or mirrored, and so is only used
+ * for schematics built straight from a file.
+ */
+public final class LazyLitematicaSchematic extends AbstractSchematic implements IStaticSchematic {
+
+    private static final int TILE_BITS = 4;
+    private static final int TILE_SIZE = 1 << TILE_BITS;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    private final Subregion[] subregions;
+
+    /**
+     * The maximum number of decoded tiles to keep
+     */
+    private final int cacheSize;
+
+    /**
+     * Tiles by tile position, least recently used first. Only held for the lookup itself, tiles are decoded under
+     * their own lock so that threads looking at other tiles aren't held up.
+     */
+    private final Long2ObjectLinkedOpenHashMap<Tile> tiles = new Long2ObjectLinkedOpenHashMap<>();
+
+    /**
+     * @param nbt       a decompressed file stream aka nbt data.
+     * @param cacheSize how many decoded tiles to keep.
+     */
+    public LazyLitematicaSchematic(CompoundTag nbt, int cacheSize) {
+        super(
+                Math.abs(nbt.getCompound("Metadata").getCompound("EnclosingSize").getInt("x")),
+                Math.abs(nbt.getCompound("Metadata").getCompound("EnclosingSize").getInt("y")),
+                Math.abs(nbt.getCompound("Metadata").getCompound("EnclosingSize").getInt("z"))
+        );
+        int minX = LitematicaSchematic.getMinOfSchematic(nbt, "x");
+        int minY = LitematicaSchematic.getMinOfSchematic(nbt, "y");
+        int minZ = LitematicaSchematic.getMinOfSchematic(nbt, "z");
+        String[] regions = LitematicaSchematic.getRegions(nbt);
+        this.subregions = new Subregion[regions.length];
+        for (int i = 0; i < regions.length; i++) {
+            this.subregions[i] = new Subregion(nbt, regions[i], minX, minY, minZ);
+        }
+        this.cacheSize = Math.max(1, cacheSize);
+    }
+
+    @Override
+    public BlockState desiredState(int x, int y, int z, BlockState current, List<BlockState> approxPlaceable) {
+        return getDirect(x, y, z);
+    }
+
+    @Override
+    public BlockState getDirect(int x, int y, int z) {
+        BlockState[] tile = getTile(x >> TILE_BITS, y >> TILE_BITS, z >> TILE_BITS);
+        return tile[(((y & TILE_MASK) << TILE_BITS | (z & TILE_MASK)) << TILE_BITS) | (x & TILE_MASK)];
+    }
+
+    private BlockState[] getTile(int tileX, int tileY, int tileZ) {
+        long key = BlockPos.asLong(tileX, tileY, tileZ);
+        Tile tile;
+        synchronized (tiles) {
+            tile = tiles.getAndMoveToLast(key);
+            if (tile == null) {
+                tile = new Tile();
+                if (tiles.size() >= cacheSize) {
+                    tiles.removeFirst();
+                }
+                tiles.putAndMoveToLast(key, tile);
+            }
+        }
+        BlockState[] states = tile.states;
+        if (states == null) {
+            synchronized (tile) {
+                states = tile.states;
+                if (states == null) {
+                    states = decode(tileX << TILE_BITS, tileY << TILE_BITS, tileZ << TILE_BITS);
+                    tile.states = states;
+                }
+            }
+        }
+        return states;
+    }
+
+    private BlockState[] decode(int minX, int minY, int minZ) {
+        BlockState[] tile = new BlockState[TILE_SIZE * TILE_SIZE * TILE_SIZE];
+        // in file order, so where subregions overlap the later one wins, same as when everything is decoded
+        for (Subregion subregion : subregions) {
+            subregion.decodeInto(tile, minX, minY, minZ);
+        }
+        return tile;
+    }
+
+    private static final class Tile {
+
+        /**
+         * The decoded block states, indexed by y, z and then x within the tile. {@code null} until decoded.
+         */
+        private volatile BlockState[] states;
+    }
+
+    private static final class Subregion {
+
+        private final BlockState[] blockList;
+        private final LitematicaSchematic.LitematicaBitArray bitArray;
+        private final int sizeX;
+        private final int sizeY;
+        private final int sizeZ;
+
+        /**
+         * Where the minimum corner of this subregion is in the schematic
+         */
+        private final int offsetX;
+        private final int offsetY;
+        private final int offsetZ;
+
+        private Subregion(CompoundTag nbt, String subReg, int minX, int minY, int minZ) {
+            ListTag usedBlockTypes = nbt.getCompound("Regions").getCompound(subReg).getList("BlockStatePalette", 10);
+            this.blockList = LitematicaSchematic.getBlockList(usedBlockTypes);
+            this.bitArray = new LitematicaSchematic.LitematicaBitArray(
+                    LitematicaSchematic.getBitsPerBlock(usedBlockTypes.size()),
+                    LitematicaSchematic.getVolume(nbt, subReg),
+                    LitematicaSchematic.getBlockStates(nbt, subReg)
+            );
+            CompoundTag size = nbt.getCompound("Regions").getCompound(subReg).getCompound("Size");
+            this.sizeX = Math.abs(size.getInt("x"));
+            this.sizeY = Math.abs(size.getInt("y"));
+            this.sizeZ = Math.abs(size.getInt("z"));
+            this.offsetX = LitematicaSchematic.getMinOfSubregion(nbt, subReg, "x") - minX;
+            this.offsetY = LitematicaSchematic.getMinOfSubregion(nbt, subReg, "y") - minY;
+            this.offsetZ = LitematicaSchematic.getMinOfSubregion(nbt, subReg, "z") - minZ;
+        }
+
+        /**
+         * Decodes the part of this subregion that overlaps the tile with the given minimum corner
+         */
+        private void decodeInto(BlockState[] tile, int minX, int minY, int minZ) {
+            int fromX = Math.max(0, minX - offsetX);
+            int fromY = Math.max(0, minY - offsetY);
+            int fromZ = Math.max(0, minZ - offsetZ);
+            int toX = Math.min(sizeX, minX + TILE_SIZE - offsetX);
+            int toY = Math.min(sizeY, minY + TILE_SIZE - offsetY);
+            int toZ = Math.min(sizeZ, minZ + TILE_SIZE - offsetZ);
+            for (int y = fromY; y < toY; y++) {
+                for (int z = fromZ; z < toZ; z++) {
+                    long index = ((long) y * sizeZ + z) * sizeX + fromX;
+                    int tileIndex = ((y + offsetY - minY) << TILE_BITS | (z + offsetZ - minZ)) << TILE_BITS;
+                    for (int x = fromX; x < toX; x++, index++) {
+                        tile[tileIndex | (x + offsetX - minX)] = blockList[bitArray.getAt(index)];
+                    }
+                }
+            }
+        }
+    }
+}
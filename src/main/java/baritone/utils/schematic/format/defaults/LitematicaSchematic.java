@@ -49,7 +49,7 @@ public final class LitematicaSchematic extends StaticSchematic {
      */
     public LitematicaSchematic(CompoundTag nbtTagCompound, boolean rotated) {
         this.nbt = nbtTagCompound;
-        this.offsetMinCorner = new Vec3i(getMinOfSchematic("x"), getMinOfSchematic("y"), getMinOfSchematic("z"));
+        this.offsetMinCorner = new Vec3i(getMinOfSchematic(nbt, "x"), getMinOfSchematic(nbt, "y"), getMinOfSchematic(nbt, "z"));
         this.y = Math.abs(nbt.getCompound("Metadata").getCompound("EnclosingSize").getInt("y"));
 
         if (rotated) {
@@ -59,14 +59,14 @@ public final class LitematicaSchematic extends StaticSchematic {
             this.x = Math.abs(nbt.getCompound("Metadata").getCompound("EnclosingSize").getInt("x"));
             this.z = Math.abs(nbt.getCompound("Metadata").getCompound("EnclosingSize").getInt("z"));
         }
-        this.states = new BlockState[this.x][this.z][this.y];
+        initStates();
         fillInSchematic();
     }
 
     /**
      * @return Array of subregion names.
      */
-    private static String[] getRegions(CompoundTag nbt) {
+    static String[] getRegions(CompoundTag nbt) {
         return nbt.getCompound("Regions").getAllKeys().toArray(new String[0]);
     }
 
@@ -76,7 +76,7 @@ public final class LitematicaSchematic extends StaticSchematic {
      * @param s axis that should be read.
      * @return the lower coord of the requested axis.
      */
-    private static int getMinOfSubregion(CompoundTag nbt, String subReg, String s) {
+    static int getMinOfSubregion(CompoundTag nbt, String subReg, String s) {
         int a = nbt.getCompound("Regions").getCompound(subReg).getCompound("Position").getInt(s);
         int b = nbt.getCompound("Regions").getCompound(subReg).getCompound("Size").getInt(s);
         if (b < 0) {
@@ -90,7 +90,7 @@ public final class LitematicaSchematic extends StaticSchematic {
      * @param blockStatePalette List of all different block types used in the schematic.
      * @return Array of BlockStates.
      */
-    private static BlockState[] getBlockList(ListTag blockStatePalette) {
+    static BlockState[] getBlockList(ListTag blockStatePalette) {
         BlockState[] blockList = new BlockState[blockStatePalette.size()];
 
         for (int i = 0; i < blockStatePalette.size(); i++) {
@@ -136,7 +136,7 @@ public final class LitematicaSchematic extends StaticSchematic {
      * @param amountOfBlockTypes amount of block types in the schematic.
      * @return amount of bits used to encode a block.
      */
-    private static int getBitsPerBlock(int amountOfBlockTypes) {
+    static int getBitsPerBlock(int amountOfBlockTypes) {
         return (int) Math.max(2, Math.ceil(Math.log(amountOfBlockTypes) / Math.log(2)));
     }
 
@@ -146,7 +146,7 @@ public final class LitematicaSchematic extends StaticSchematic {
      *
      * @return the volume of the subregion.
      */
-    private static long getVolume(CompoundTag nbt, String subReg) {
+    static long getVolume(CompoundTag nbt, String subReg) {
         return Math.abs(
                 nbt.getCompound("Regions").getCompound(subReg).getCompound("Size").getInt("x") *
                         nbt.getCompound("Regions").getCompound(subReg).getCompound("Size").getInt("y") *
@@ -156,7 +156,7 @@ public final class LitematicaSchematic extends StaticSchematic {
     /**
      * @return array of Long values.
      */
-    private static long[] getBlockStates(CompoundTag nbt, String subReg) {
+    static long[] getBlockStates(CompoundTag nbt, String subReg) {
         return nbt.getCompound("Regions").getCompound(subReg).getLongArray("BlockStates");
     }
 
@@ -179,7 +179,7 @@ public final class LitematicaSchematic extends StaticSchematic {
      * @param s axis.
      * @return the lowest coordinate of that axis of the schematic.
      */
-    private int getMinOfSchematic(String s) {
+    static int getMinOfSchematic(CompoundTag nbt, String s) {
         int n = Integer.MAX_VALUE;
         for (String subReg : getRegions(nbt)) {
             n = Math.min(n, getMinOfSubregion(nbt, subReg, s));
@@ -218,7 +218,7 @@ public final class LitematicaSchematic extends StaticSchematic {
             for (int z = 0; z < this.z; z++) {
                 for (int x = 0; x < this.x; x++) {
                     if (inSubregion(nbt, subReg, x, y, z)) {
-                        this.states[x - (offsetMinCorner.getX() - offsetSubregion.getX())][z - (offsetMinCorner.getZ() - offsetSubregion.getZ())][y - (offsetMinCorner.getY() - offsetSubregion.getY())] = blockList[bitArray.getAt(index)];
+                        setDirect(x - (offsetMinCorner.getX() - offsetSubregion.getX()), y - (offsetMinCorner.getY() - offsetSubregion.getY()), z - (offsetMinCorner.getZ() - offsetSubregion.getZ()), blockList[bitArray.getAt(index)]);
                         index++;
                     }
                 }
@@ -260,8 +260,9 @@ public final class LitematicaSchematic extends StaticSchematic {
      * @param z          position relative to the minimum corner of the schematic.
      * @param blockState new blockstate of the block at this position.
      */
+    @Override
     public void setDirect(int x, int y, int z, BlockState blockState) {
-        this.states[x][z][y] = blockState;
+        super.setDirect(x, y, z, blockState);
     }
 
     /**
@@ -278,7 +279,7 @@ public final class LitematicaSchematic extends StaticSchematic {
      * Usage under LGPLv3 with the permission of the author.
      * <a href="https://github.com/maruohon/litematica">...</a>
      */
-    private static class LitematicaBitArray {
+    static class LitematicaBitArray {
         /**
          * The long array that is used to store the data for this BitArray.
          */
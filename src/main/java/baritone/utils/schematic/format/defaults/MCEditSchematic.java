@@ -52,7 +52,7 @@ public final class MCEditSchematic extends StaticSchematic {
                 additional[i * 2 + 1] = (byte) ((addBlocks[i] >> 0) & 0xF); // upper nibble
             }
         }
-        this.states = new BlockState[this.x][this.z][this.y];
+        initStates();
         for (int y = 0; y < this.y; y++) {
             for (int z = 0; z < this.z; z++) {
                 for (int x = 0; x < this.x; x++) {
@@ -66,7 +66,7 @@ public final class MCEditSchematic extends StaticSchematic {
                     Block block = BuiltInRegistries.BLOCK.get(ResourceLocation.tryParse(ItemIdFix.getItem(blockID)));
 //                    int meta = metadata[blockInd] & 0xFF;
 //                    this.states[x][z][y] = block.getStateFromMeta(meta);
-                    this.states[x][z][y] = block.defaultBlockState();
+                    setDirect(x, y, z, block.defaultBlockState());
                 }
             }
         }
@@ -43,7 +43,7 @@ public final class SpongeSchematic extends StaticSchematic {
         this.x = nbt.getInt("Width");
         this.y = nbt.getInt("Height");
         this.z = nbt.getInt("Length");
-        this.states = new BlockState[this.x][this.z][this.y];
+        initStates();
 
         Int2ObjectArrayMap<BlockState> palette = new Int2ObjectArrayMap<>();
         CompoundTag paletteTag = nbt.getCompound("Palette");
@@ -86,7 +86,7 @@ public final class SpongeSchematic extends StaticSchematic {
                         throw new IllegalArgumentException("Invalid Palette Index " + index);
                     }
 
-                    this.states[x][z][y] = state;
+                    setDirect(x, y, z, state);
                 }
             }
         }
@@ -0,0 +1,187 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.cache;
+
+import baritone.api.utils.BlockUtils;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.tags.BlockTags;
+import net.minecraft.util.valueproviders.UniformInt;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.dimension.BuiltinDimensionTypes;
+import net.minecraft.world.level.dimension.DimensionType;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CachedRegionFormatTest {
+
+    private static final int MIN_Y = -64;
+    private static final int HEIGHT = 384;
+
+    private static DimensionType dimension;
+
+    @BeforeClass
+    public static void bootstrap() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+        dimension = new DimensionType(OptionalLong.empty(), true, false, false, true, 1.0, true, false, MIN_Y, HEIGHT, HEIGHT,
+                BlockTags.INFINIBURN_OVERWORLD, BuiltinDimensionTypes.OVERWORLD_EFFECTS, 0.0F,
+                new DimensionType.MonsterSettings(false, true, UniformInt.of(0, 7), 0));
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        CachedRegion region = new CachedRegion(1, -2, dimension);
+        CachedChunk chunk = chunk(32 + 3, -64 + 5);
+        region.updateCachedChunk(3, 5, chunk);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            region.write(out);
+        }
+        assertEquals(456022912, new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())).readInt());
+
+        CachedRegion read = new CachedRegion(1, -2, dimension);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read.read(in);
+        }
+        assertSameChunk(chunk, read.mostRecentlyModified());
+        assertTrue(read.isCached(3 * 16, 5 * 16));
+        assertFalse(read.isCached(0, 0));
+    }
+
+    @Test
+    public void readsLegacyFormat() throws IOException {
+        CachedChunk chunk = chunk(7, 9);
+        // the way regions were written before block names went in a dictionary
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(456022911);
+            for (int x = 0; x < 32; x++) {
+                for (int z = 0; z < 32; z++) {
+                    if (x == 7 && z == 9) {
+                        out.write(1);
+                        byte[] data = chunk.toByteArray();
+                        out.write(data);
+                        out.write(new byte[chunk.sizeInBytes - data.length]);
+                    } else {
+                        out.write(0);
+                    }
+                }
+            }
+            for (BlockState state : chunk.getOverview()) {
+                out.writeUTF(BlockUtils.blockToString(state.getBlock()));
+            }
+            out.writeShort(chunk.getRelativeBlocks().size());
+            for (int trackedId : chunk.getRelativeBlocks().keySet()) {
+                List<BlockPos> locs = chunk.getRelativeBlocks().get(trackedId);
+                out.writeUTF(BlockUtils.blockToString(CachedChunk.trackedBlock(trackedId)));
+                out.writeShort(locs.size());
+                for (BlockPos pos : locs) {
+                    out.writeByte((byte) (pos.getZ() << 4 | pos.getX()));
+                    out.writeInt(pos.getY() - MIN_Y);
+                }
+            }
+            out.writeLong(chunk.cacheTimestamp);
+        }
+
+        CachedRegion read = new CachedRegion(0, 0, dimension);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read.read(in);
+        }
+        assertSameChunk(chunk, read.mostRecentlyModified());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnknownMagic() throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(new byte[]{0, 0, 0, 42}))) {
+            new CachedRegion(0, 0, dimension).read(in);
+        }
+    }
+
+    @Test
+    public void locationIndexFollowsChunkUpdates() {
+        CachedRegion region = new CachedRegion(0, 0, dimension);
+        int chest = CachedChunk.trackedId(Blocks.CHEST);
+        int spawner = CachedChunk.trackedId(Blocks.SPAWNER);
+        region.updateCachedChunk(3, 5, chunk(3, 5));
+        assertEquals(Arrays.asList(new BlockPos(3 * 16 + 1, 12, 5 * 16 + 2), new BlockPos(3 * 16 + 15, -60, 5 * 16 + 15)), region.getLocationsOf(chest));
+
+        // once the index is built, other chunks arriving and leaving only change their own entries
+        region.updateCachedChunk(4, 5, chunk(4, 5));
+        assertEquals(4, region.getLocationsOf(chest).size());
+        assertEquals(2, region.getLocationsOf(spawner).size());
+        region.updateCachedChunk(3, 5, new CachedChunk(3, 5, MIN_Y, HEIGHT, new BitSet(), chunk(3, 5).getOverview(), new Int2ObjectOpenHashMap<>(), 0L));
+        assertEquals(Arrays.asList(new BlockPos(4 * 16 + 1, 12, 5 * 16 + 2), new BlockPos(4 * 16 + 15, -60, 5 * 16 + 15)), region.getLocationsOf(chest));
+        assertEquals(Collections.singletonList(new BlockPos(4 * 16, 300, 5 * 16)), region.getLocationsOf(spawner));
+        region.updateCachedChunk(3, 5, chunk(3, 5));
+        assertEquals(4, region.getLocationsOf(chest).size());
+    }
+
+    private static CachedChunk chunk(int chunkX, int chunkZ) {
+        BitSet data = new BitSet();
+        // a few solid layers at the bottom, and a scattering of other types above
+        for (int i = 0; i < 2 * 256 * 4; i += 2) {
+            data.set(i);
+        }
+        for (int i = 2 * 256 * 4; i < CachedChunk.size(HEIGHT); i += 2 * 37) {
+            data.set(i + 1);
+        }
+        BlockState[] overview = new BlockState[256];
+        for (int i = 0; i < overview.length; i++) {
+            overview[i] = (i % 3 == 0 ? Blocks.STONE : i % 3 == 1 ? Blocks.GRASS_BLOCK : Blocks.WATER).defaultBlockState();
+        }
+        Int2ObjectOpenHashMap<List<BlockPos>> special = new Int2ObjectOpenHashMap<>();
+        special.put(CachedChunk.trackedId(Blocks.CHEST), new ArrayList<>(Arrays.asList(new BlockPos(1, 12, 2), new BlockPos(15, -60, 15))));
+        special.put(CachedChunk.trackedId(Blocks.SPAWNER), new ArrayList<>(Collections.singletonList(new BlockPos(0, 300, 0))));
+        return new CachedChunk(chunkX, chunkZ, MIN_Y, HEIGHT, data, overview, special, 123456789L);
+    }
+
+    private static void assertSameChunk(CachedChunk expected, CachedChunk actual) {
+        assertEquals(expected.x, actual.x);
+        assertEquals(expected.z, actual.z);
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        for (int i = 0; i < 256; i++) {
+            // only blocks are stored, not their states
+            assertEquals(expected.getOverview()[i].getBlock(), actual.getOverview()[i].getBlock());
+        }
+        assertEquals(expected.getRelativeBlocks(), actual.getRelativeBlocks());
+        assertEquals(expected.cacheTimestamp, actual.cacheTimestamp);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package baritone.cache;
+
+import net.minecraft.core.BlockPos;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class NearestLocationsTest {
+
+    @Test
+    public void keepsClosestInOrder() {
+        Random random = new Random(5021);
+        for (int maximum : new int[]{0, 1, 5, 64, 1000, Integer.MAX_VALUE}) {
+            BlockPos center = new BlockPos(random.nextInt(2000) - 1000, random.nextInt(300) - 64, random.nextInt(2000) - 1000);
+            NearestLocations nearest = new NearestLocations(maximum, center.getX(), center.getY(), center.getZ());
+            List<BlockPos> all = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                BlockPos pos = new BlockPos(random.nextInt(2000) - 1000, random.nextInt(300) - 64, random.nextInt(2000) - 1000);
+                all.add(pos);
+                nearest.offer(pos.asLong());
+            }
+            all.sort(Comparator.comparingDouble(pos -> pos.distSqr(center)));
+            List<BlockPos> result = nearest.toSortedList();
+            assertEquals(Math.min(maximum, all.size()), result.size());
+            for (int i = 0; i < result.size(); i++) {
+                // ties can come out in either order, so only compare distances
+                assertEquals(all.get(i).distSqr(center), result.get(i).distSqr(center), 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.cache;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RegionSummariesTest {
+
+    @Test
+    public void roundTrip() throws IOException {
+        Map<Long, int[]> written = new HashMap<>();
+        written.put(0L, new int[]{-64, 12, Integer.MAX_VALUE, Integer.MIN_VALUE});
+        written.put(-5L << 32 | 7, new int[]{3, 3, 100, 250});
+        Map<Long, int[]> read = read(write(new String[]{"minecraft:chest", "minecraft:spawner"}, written), name -> name.equals("minecraft:chest") ? 0 : 1, 2);
+        assertEquals(written.keySet(), read.keySet());
+        for (Map.Entry<Long, int[]> entry : written.entrySet()) {
+            assertArrayEquals(entry.getValue(), read.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void mapsBlocksByName() throws IOException {
+        Map<Long, int[]> written = new HashMap<>();
+        written.put(1L, new int[]{1, 2, 3, 4, 5, 6});
+        // the tracked ids moved around, one block isn't tracked anymore and one is tracked that wasn't before
+        Map<Long, int[]> read = read(write(new String[]{"a", "b", "c"}, written), name -> {
+            switch (name) {
+                case "a":
+                    return 1;
+                case "c":
+                    return 0;
+                default:
+                    return -1;
+            }
+        }, 3);
+        assertArrayEquals(new int[]{5, 6, 1, 2, Integer.MIN_VALUE, Integer.MAX_VALUE}, read.get(1L));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsBadMagic() throws IOException {
+        read(new byte[]{1, 2, 3, 4}, name -> 0, 1);
+    }
+
+    private static byte[] write(String[] names, Map<Long, int[]> summaries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            RegionSummaries.write(out, names, summaries);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Map<Long, int[]> read(byte[] bytes, ToIntFunction<String> ids, int count) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return RegionSummaries.read(in, ids, count);
+        }
+    }
+}
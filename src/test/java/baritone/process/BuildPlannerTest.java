@@ -0,0 +1,80 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.process;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.core.BlockPos;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class BuildPlannerTest {
+
+    @Test
+    public void staysInCellUntilItsDone() {
+        BuildPlanner planner = new BuildPlanner();
+        LongArrayList work = LongArrayList.of(BlockPos.asLong(1, 64, 1), BlockPos.asLong(30, 64, 1));
+        long first = planner.choose(work, BlockPos.ZERO);
+        assertEquals(BuildPlanner.cellOf(BlockPos.asLong(1, 64, 1)), first);
+        // something closer to the player turning up doesn't pull us away
+        work.add(BlockPos.asLong(-9, 64, 0));
+        assertEquals(first, planner.choose(work, new BlockPos(-9, 64, 0)));
+        // once it's done, the next one is picked from where the last cell was, not from the player
+        work.rem(BlockPos.asLong(1, 64, 1));
+        assertEquals(BuildPlanner.cellOf(BlockPos.asLong(-9, 64, 0)), planner.choose(work, new BlockPos(30, 64, 0)));
+    }
+
+    @Test
+    public void keepsCellWhenThereIsNoWork() {
+        BuildPlanner planner = new BuildPlanner();
+        LongArrayList work = LongArrayList.of(BlockPos.asLong(1, 64, 1), BlockPos.asLong(30, 64, 1));
+        long first = planner.choose(work, BlockPos.ZERO);
+        assertEquals(BuildPlanner.NONE, planner.choose(new LongArrayList(), new BlockPos(30, 64, 0)));
+        // the work coming back doesn't make the player's position matter again
+        assertEquals(first, planner.choose(work, new BlockPos(30, 64, 0)));
+    }
+
+    @Test
+    public void prefersLowerCells() {
+        BuildPlanner planner = new BuildPlanner();
+        LongArrayList work = LongArrayList.of(BlockPos.asLong(1, 80, 1), BlockPos.asLong(30, 64, 1));
+        assertEquals(BuildPlanner.cellOf(BlockPos.asLong(30, 64, 1)), planner.choose(work, BlockPos.ZERO));
+    }
+
+    @Test
+    public void skipsFailedCells() {
+        BuildPlanner planner = new BuildPlanner();
+        LongArrayList work = LongArrayList.of(BlockPos.asLong(1, 64, 1), BlockPos.asLong(20, 64, 1));
+        planner.choose(work, BlockPos.ZERO);
+        planner.failed();
+        assertEquals(BuildPlanner.cellOf(BlockPos.asLong(20, 64, 1)), planner.choose(work, BlockPos.ZERO));
+        planner.failed();
+        assertEquals(BuildPlanner.NONE, planner.choose(work, BlockPos.ZERO));
+        planner.reset();
+        assertEquals(BuildPlanner.cellOf(BlockPos.asLong(1, 64, 1)), planner.choose(work, BlockPos.ZERO));
+    }
+
+    @Test
+    public void negativeCoordinates() {
+        assertEquals(BuildPlanner.cellOf(BlockPos.asLong(-1, 0, -1)), BuildPlanner.cellOf(BlockPos.asLong(-8, 0, -8)));
+        assertNotEquals(BuildPlanner.cellOf(BlockPos.asLong(-1, 0, -1)), BuildPlanner.cellOf(BlockPos.asLong(0, 0, -1)));
+        assertNotEquals(BuildPlanner.cellOf(BlockPos.asLong(-1, 0, -1)), BuildPlanner.cellOf(BlockPos.asLong(-1, 0, 0)));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.process;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Vec3i;
+import net.minecraft.world.level.ChunkPos;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BuildProgressTest {
+
+    private static final long CHUNK_A = ChunkPos.asLong(0, 0);
+    private static final long CHUNK_B = ChunkPos.asLong(1, 0);
+
+    /**
+     * A 32x8x16 schematic at y 10, covering chunks A and B
+     */
+    private static BuildProgress progress(long... incorrect) {
+        BuildProgress progress = new BuildProgress(new Vec3i(0, 10, 0), 32, 8, 16);
+        BitSet a = new BitSet();
+        BitSet b = new BitSet();
+        for (long pos : incorrect) {
+            int x = BlockPos.getX(pos);
+            (x < 16 ? a : b).set(progress.index(x, BlockPos.getY(pos), BlockPos.getZ(pos)));
+        }
+        progress.put(CHUNK_A, a);
+        progress.put(CHUNK_B, b);
+        return progress;
+    }
+
+    @Test
+    public void index() {
+        BuildProgress progress = new BuildProgress(new Vec3i(0, 10, 0), 32, 8, 16);
+        assertEquals(0, progress.index(0, 10, 0));
+        assertEquals(2 << 8 | 4 << 4 | 3, progress.index(3, 12, 4));
+        // only the position within the chunk counts horizontally
+        assertEquals(progress.index(3, 12, 4), progress.index(19, 12, 20));
+        BuildProgress negative = new BuildProgress(new Vec3i(-20, -5, -20), 32, 8, 32);
+        assertEquals(2 << 8 | 15 << 4 | 15, negative.index(-17, -3, -1));
+    }
+
+    @Test
+    public void mergesChunksLowestFirst() {
+        long a0 = BlockPos.asLong(0, 10, 0);
+        long b1 = BlockPos.asLong(17, 11, 1);
+        long a3 = BlockPos.asLong(3, 13, 4);
+        long b5 = BlockPos.asLong(31, 15, 15);
+        LongArrayList out = new LongArrayList();
+        progress(b5, a3, b1, a0).collect(out, 0, 7, Integer.MAX_VALUE);
+        assertEquals(LongArrayList.of(a0, b1, a3, b5), out);
+    }
+
+    @Test
+    public void keepsRowsTogether() {
+        long a0 = BlockPos.asLong(0, 10, 0);
+        long a0Other = BlockPos.asLong(5, 10, 9);
+        long b0 = BlockPos.asLong(20, 10, 2);
+        long a1 = BlockPos.asLong(1, 11, 1);
+        LongArrayList out = new LongArrayList();
+        progress(a1, b0, a0Other, a0).collect(out, 0, 7, Integer.MAX_VALUE);
+        assertEquals(4, out.size());
+        // which chunk comes first within a row isn't specified, only that all of y 0 comes before y 1
+        assertEquals(new LongOpenHashSet(new long[]{a0, a0Other, b0}), new LongOpenHashSet(out.subList(0, 3)));
+        assertEquals(a1, out.getLong(3));
+    }
+
+    @Test
+    public void stopsAfterTheLimit() {
+        long a0 = BlockPos.asLong(0, 10, 0);
+        long a0Other = BlockPos.asLong(5, 10, 9);
+        long a1 = BlockPos.asLong(1, 11, 1);
+        long b2 = BlockPos.asLong(16, 12, 0);
+        BuildProgress progress = progress(a0, a0Other, a1, b2);
+        LongArrayList out = new LongArrayList();
+        // a row that was started is always finished
+        progress.collect(out, 0, 7, 0);
+        assertEquals(LongArrayList.of(a0, a0Other), out);
+        out.clear();
+        progress.collect(out, 0, 7, 2);
+        assertEquals(LongArrayList.of(a0, a0Other, a1), out);
+        // what's already in the collection counts towards the limit
+        out.clear();
+        out.add(0L);
+        out.add(1L);
+        out.add(2L);
+        progress.collect(out, 0, 7, 2);
+        assertEquals(3, out.size());
+    }
+
+    @Test
+    public void clampsToTheSchematic() {
+        long a0 = BlockPos.asLong(0, 10, 0);
+        long b2 = BlockPos.asLong(16, 12, 0);
+        long a7 = BlockPos.asLong(2, 17, 2);
+        BuildProgress progress = progress(a0, b2, a7);
+        // a stray bit above the schematic is never returned
+        BitSet a = new BitSet();
+        a.set(progress.index(0, 10, 0));
+        a.set(progress.index(2, 17, 2));
+        a.set(progress.index(4, 18, 4));
+        progress.put(CHUNK_A, a);
+
+        LongArrayList out = new LongArrayList();
+        progress.collect(out, -5, 100, Integer.MAX_VALUE);
+        assertEquals(LongArrayList.of(a0, b2, a7), out);
+
+        out.clear();
+        progress.collect(out, 1, 6, Integer.MAX_VALUE);
+        assertEquals(LongArrayList.of(b2), out);
+
+        out.clear();
+        progress.collect(out, 2, 2, Integer.MAX_VALUE);
+        assertEquals(LongArrayList.of(b2), out);
+
+        out.clear();
+        progress.collect(out, 5, 4, Integer.MAX_VALUE);
+        assertTrue(out.isEmpty());
+
+        out.clear();
+        progress.collect(out, 8, 100, Integer.MAX_VALUE);
+        assertTrue(out.isEmpty());
+    }
+}
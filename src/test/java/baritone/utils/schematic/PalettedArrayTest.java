@@ -0,0 +1,55 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.utils.schematic;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+public class PalettedArrayTest {
+
+    @Test
+    public void matchesPlainArray() {
+        Random random = new Random(4101);
+        String[] values = new String[300];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = "value" + i;
+        }
+        for (int size : new int[]{0, 1, 63, 64, 65, 1000}) {
+            PalettedArray<String> array = new PalettedArray<>(size);
+            String[] expected = new String[size];
+            for (int i = 0; size > 0 && i < 5000; i++) {
+                int index = random.nextInt(size);
+                // slowly widen the range of values so the array is repacked at every width along the way
+                String value = random.nextInt(10) == 0 ? null : values[random.nextInt(1 + i * values.length / 5000)];
+                array.set(index, value);
+                expected[index] = value;
+            }
+            for (int i = 0; i < size; i++) {
+                assertSame(expected[i], array.get(i));
+            }
+            String[] copy = new String[size];
+            array.get(0, copy);
+            assertArrayEquals(expected, copy);
+        }
+    }
+}
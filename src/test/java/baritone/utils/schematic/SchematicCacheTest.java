@@ -0,0 +1,100 @@
+/*
+ * This file is part of Baritone.
+ *
+ * Baritone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Baritone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Baritone.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package baritone.utils.schematic;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class SchematicCacheTest {
+
+    /**
+     * Bytes in front of the packed indices, like the header of a real copy
+     */
+    private static final int BODY = 12;
+
+    @Test
+    public void packedIndicesRoundTrip() throws IOException {
+        Random random = new Random(5002);
+        for (int bits : new int[]{1, 2, 3, 5, 7, 8, 13, 20, 30}) {
+            int max = (1 << bits) - 1;
+            for (int count : new int[]{1, 63, 64, 65, 500}) {
+                int[] ids = new int[count];
+                for (int i = 0; i < count; i++) {
+                    ids[i] = random.nextInt(max + 1);
+                }
+                // the highest index at both ends, so the top bits of the first and last one are checked too
+                ids[0] = max;
+                ids[count - 1] = max;
+                ByteBuffer buffer = pack(ids, bits);
+                assertEquals(BODY + SchematicCache.bodyLength(count, bits), buffer.capacity());
+                for (int i = 0; i < count; i++) {
+                    assertEquals("bits " + bits + " index " + i, ids[i], MappedSchematic.read(buffer, BODY, bits, (long) i * bits));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void indexSpanningTwoWords() throws IOException {
+        // with 7 bits, index 9 takes up bits 63 to 69, so one bit of it is in the first long and six in the second
+        int[] ids = new int[20];
+        ids[8] = 0b0101010;
+        ids[9] = 0b1011011;
+        ids[10] = 0b1111111;
+        ByteBuffer buffer = pack(ids, 7);
+        assertEquals(1L, buffer.getLong(BODY) >>> 63);
+        assertEquals(0b101101, buffer.getLong(BODY + 8) & 0b111111);
+        assertEquals(0b0101010, MappedSchematic.read(buffer, BODY, 7, 8 * 7));
+        assertEquals(0b1011011, MappedSchematic.read(buffer, BODY, 7, 9 * 7));
+        assertEquals(0b1111111, MappedSchematic.read(buffer, BODY, 7, 10 * 7));
+    }
+
+    @Test
+    public void bitsForPaletteSize() {
+        assertEquals(0, SchematicCache.bitsFor(1));
+        assertEquals(1, SchematicCache.bitsFor(2));
+        assertEquals(2, SchematicCache.bitsFor(3));
+        assertEquals(2, SchematicCache.bitsFor(4));
+        assertEquals(3, SchematicCache.bitsFor(5));
+        assertEquals(8, SchematicCache.bitsFor(256));
+        assertEquals(9, SchematicCache.bitsFor(257));
+    }
+
+    private static ByteBuffer pack(int[] ids, int bits) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (int i = 0; i < BODY; i++) {
+                out.writeByte(0xFF);
+            }
+            SchematicCache.IndexWriter writer = new SchematicCache.IndexWriter(out, bits);
+            for (int id : ids) {
+                writer.write(id);
+            }
+            writer.finish();
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+}